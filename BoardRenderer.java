@@ -1,5 +0,0 @@
-import java.awt.Graphics;
-
-public interface BoardRenderer {
-    void render(Graphics g, TetrisBoard board);
-}
@@ -0,0 +1,26 @@
+package tetris;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// JMH entry point that writes JSON results (jmh-result.json) unless -rf/-rff say otherwise.
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (cli.shouldHelp()) {
+            cli.showHelp();
+            return;
+        }
+        if (cli.shouldList()) {
+            new Runner(cli).list();
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cli);
+        if (!cli.getResultFormat().hasValue()) options.resultFormat(ResultFormatType.JSON);
+        if (!cli.getResult().hasValue()) options.result("jmh-result.json");
+        new Runner(options.build()).run();
+    }
+}
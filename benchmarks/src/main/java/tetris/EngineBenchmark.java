@@ -0,0 +1,123 @@
+package tetris;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EngineBenchmark {
+    @Param({"10x20", "12x20", "10x200", "64x1000"})
+    public String size;
+
+    // Fraction of the playfield below the spawn area filled with garbage.
+    @Param({"0.0", "0.5", "0.9"})
+    public double density;
+
+    private TetrisBoard template;
+    private TetrisBoard.Snapshot start;
+    // tick and dropDown lock pieces, so they put the board back to the fixture after this many, or on game
+    // over, to keep measuring at the density asked for: enough pieces to fill about 8% of the cells. The
+    // restore is part of the measured time, and this cadence keeps it to a small share of it.
+    private int piecesPerReset;
+    private TetrisBoard board;
+    private TetrisBoard clearing;
+    private Tetromino piece;
+    private int blockedX, blockedY;
+
+    @Setup
+    public void setUp() {
+        String[] dims = size.split("x");
+        template = fixture(Integer.parseInt(dims[0]), Integer.parseInt(dims[1]), density, 42);
+        start = template.snapshot();
+        board = template.copy();
+        clearing = template.copy();
+        piecesPerReset = Math.max(4, template.getCols() * template.getRows() / 50);
+        piece = board.getCurrentPiece();
+        blockedX = board.getCols() / 2;
+        blockedY = 1;
+    }
+
+    // Garbage rows have one hole each, except every fourth row which is complete so line clears have work to do.
+    static TetrisBoard fixture(int cols, int rows, double density, long seed) {
+        TetrisBoard b = new TetrisBoard(cols, rows, seed);
+        b.start();
+        SplittableRandom random = new SplittableRandom(seed);
+        int stack = (int) (density * Math.max(0, rows - 4));
+        for (int y = 0; y < stack; y++) {
+            int hole = y % 4 == 3 ? -1 : random.nextInt(cols);
+            for (int x = 0; x < cols; x++) {
+                if (x != hole) b.setCell(x, y, TetrisBoard.Tetrominoes.values()[1 + random.nextInt(7)]);
+            }
+        }
+        return b;
+    }
+
+    @Benchmark
+    public boolean tryMoveFree() {
+        return board.tryMove(piece, board.getCurX(), board.getCurY());
+    }
+
+    @Benchmark
+    public boolean tryMoveBlocked() {
+        return board.tryMove(piece, blockedX, blockedY);
+    }
+
+    @Benchmark
+    public int tick() {
+        resetIfDrifted();
+        board.tick();
+        return board.getCurY();
+    }
+
+    @Benchmark
+    public int dropDown() {
+        resetIfDrifted();
+        board.dropDown();
+        return board.getScore();
+    }
+
+    private void resetIfDrifted() {
+        if (!board.isStarted() || board.getPieceCount() - start.getPieceCount() >= piecesPerReset) board.restore(start);
+    }
+
+    @Benchmark
+    public int ghostY() {
+        return board.ghostY();
+    }
+
+    @Benchmark
+    public int landingY() {
+        return board.landingY(piece, blockedX);
+    }
+
+    // A per-invocation setup would cost more than the clear itself, so each call restores the fixture first;
+    // restore alone is the baseline to subtract.
+    @Benchmark
+    public int removeFullLines() {
+        clearing.restore(start);
+        clearing.removeFullLines();
+        return clearing.getScore();
+    }
+
+    @Benchmark
+    public int restore() {
+        clearing.restore(start);
+        return clearing.getScore();
+    }
+}
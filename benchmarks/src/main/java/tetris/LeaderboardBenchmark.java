@@ -0,0 +1,87 @@
+package tetris;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LeaderboardBenchmark {
+    @Param({"10", "10000", "1000000"})
+    public int entries;
+
+    @Param({"txt", "bin"})
+    public String format;
+
+    private File dir;
+    private File store;
+    private Leaderboard leaderboard;
+    private int score;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("leaderboard-bench").toFile();
+        File text = new File(dir, "tetris-leaderboard.txt");
+        try (PrintWriter out = new PrintWriter(text)) {
+            for (int i = 0; i < entries; i++) out.println("player" + i + "," + (i * 7919 % 100_000));
+        }
+        store = text;
+        if (format.equals("bin")) {
+            store = new File(dir, "tetris-leaderboard.bin");
+            LeaderboardFile.write(store, LeaderboardFile.readText(text));
+        }
+        leaderboard = new Leaderboard(store.getPath());
+    }
+
+    @TearDown
+    public void tearDown() {
+        leaderboard.close();
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    @Benchmark
+    public Leaderboard add() {
+        leaderboard.add("bench", ++score);
+        return leaderboard;
+    }
+
+    @Benchmark
+    public List<Leaderboard.Entry> top() {
+        return leaderboard.top(5);
+    }
+
+    @Benchmark
+    public int rankOf() {
+        return leaderboard.rankOf("player" + (++score % entries));
+    }
+
+    @Benchmark
+    public int open() {
+        Leaderboard fresh = new Leaderboard(store.getPath());
+        int size = fresh.size();
+        fresh.close();
+        return size;
+    }
+}
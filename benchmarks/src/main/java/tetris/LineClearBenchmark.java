@@ -0,0 +1,59 @@
+package tetris;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Clears one line at the bottom or the top of a stack on a 10 x 100,000 board. Each invocation completes
+// a row, clears it and tops the stack back up with a fresh holed row, so the stack height stays fixed.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LineClearBenchmark {
+    private static final int COLS = 10;
+    private static final int ROWS = 100_000;
+    private static final int HOLE = 3;
+
+    @Param({"100", "10000", "99000"})
+    public int stack;
+
+    @Param({"bottom", "top"})
+    public String position;
+
+    private TetrisBoard board;
+    private int line;
+
+    @Setup
+    public void setUp() {
+        board = new TetrisBoard(COLS, ROWS, 42);
+        for (int y = 0; y < stack; y++) fillRow(y);
+        line = position.equals("bottom") ? 0 : stack - 1;
+    }
+
+    private void fillRow(int y) {
+        for (int x = 0; x < COLS; x++) {
+            if (x != HOLE) board.setCell(x, y, TetrisBoard.Tetrominoes.values()[1 + (x + y) % 7]);
+        }
+    }
+
+    @Benchmark
+    public int clearLine() {
+        board.setCell(HOLE, line, TetrisBoard.Tetrominoes.LineShape);
+        board.removeFullLines(line, line);
+        fillRow(stack - 1);
+        return board.getScore();
+    }
+}
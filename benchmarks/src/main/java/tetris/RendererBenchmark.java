@@ -0,0 +1,82 @@
+package tetris;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class RendererBenchmark {
+    @Param({"0.0", "0.5", "0.9"})
+    public double density;
+
+    // 24 is the game's cell size; 96 is about what a 4K display needs to show the board at the same size.
+    @Param({"24", "96"})
+    public int cellSize;
+
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private TetrisBoard board;
+    private Tetris.StandardBoardRenderer renderer;
+    private int frame;
+
+    @Setup
+    public void setUp() {
+        board = EngineBenchmark.fixture(12, 20, density, 42);
+        renderer = new Tetris.StandardBoardRenderer(cellSize);
+        image = new BufferedImage(12 * cellSize, 20 * cellSize, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+        renderer.render(graphics, board);
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    // A frame where nothing on the board changed.
+    @Benchmark
+    public BufferedImage render() {
+        return frame();
+    }
+
+    // A frame where the falling piece moved, the common case during play.
+    @Benchmark
+    public BufferedImage renderMove() {
+        if ((frame++ & 1) == 0) board.moveLeft(); else board.moveRight();
+        return frame();
+    }
+
+    // Every row repainted, as on the first frame of a game.
+    @Benchmark
+    public BufferedImage renderFull() {
+        renderer.invalidate();
+        graphics.setClip(null);
+        renderer.render(graphics, board);
+        return image;
+    }
+
+    // Clipped to the damage the renderer reports, as the game's frame loop does.
+    private BufferedImage frame() {
+        graphics.setClip(renderer.damage(board));
+        renderer.render(graphics, board);
+        return image;
+    }
+}
@@ -0,0 +1,39 @@
+package tetris;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RotationBenchmark {
+    @Param({"LineShape", "TShape", "SquareShape"})
+    public TetrisBoard.Tetrominoes shape;
+
+    private Tetromino piece;
+
+    @Setup
+    public void setUp() {
+        piece = TetrominoFactory.get(shape, 0);
+    }
+
+    @Benchmark
+    public Tetromino rotateLeft() {
+        piece = piece.rotateLeft();
+        return piece;
+    }
+}
@@ -0,0 +1,70 @@
+package tetris;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SnapshotBenchmark {
+    @Param({"10x20", "10x200", "64x1000"})
+    public String size;
+
+    @Param({"0.0", "0.5"})
+    public double density;
+
+    private TetrisBoard board;
+    private TetrisBoard.Snapshot snapshot;
+    private byte[] bytes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] dims = size.split("x");
+        board = EngineBenchmark.fixture(Integer.parseInt(dims[0]), Integer.parseInt(dims[1]), density, 42);
+        snapshot = board.snapshot();
+        bytes = snapshot.toBytes();
+    }
+
+    @Benchmark
+    public TetrisBoard copy() {
+        return board.copy();
+    }
+
+    @Benchmark
+    public TetrisBoard.Snapshot snapshot() {
+        return board.snapshot();
+    }
+
+    // One search branch: rewind to the snapshot and play a placement.
+    @Benchmark
+    public int restoreAndDrop() {
+        board.restore(snapshot);
+        board.dropDown();
+        return board.getScore();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return snapshot.toBytes();
+    }
+
+    @Benchmark
+    public TetrisBoard.Snapshot deserialize() {
+        return TetrisBoard.Snapshot.fromBytes(bytes, PieceGenerator.uniform(42));
+    }
+}
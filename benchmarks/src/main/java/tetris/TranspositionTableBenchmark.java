@@ -0,0 +1,55 @@
+package tetris;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// One table shared by every benchmark thread, as parallel searchers share it. Keys walk a fixed set of
+// positions, so a table at least that large mostly hits and a smaller one mostly collides.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class TranspositionTableBenchmark {
+    private static final int POSITIONS = 1 << 16;
+
+    @Param({"4096", "1048576"})
+    public int entries;
+
+    private TranspositionTable table;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        long next = Thread.currentThread().getId();
+
+        long key() { return (next++ & (POSITIONS - 1)) * 0x9E3779B97F4A7C15L; }
+    }
+
+    @Setup
+    public void setUp() {
+        table = new TranspositionTable(entries);
+    }
+
+    // A probe, and a store on a miss, as AutoPlayer does per evaluated position.
+    @Benchmark
+    public double probeOrStore(Cursor cursor) {
+        long key = cursor.key();
+        double value = table.get(key, 0);
+        if (Double.isNaN(value)) table.put(key, 0, value = key);
+        return value;
+    }
+}
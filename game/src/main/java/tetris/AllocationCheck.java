@@ -0,0 +1,87 @@
+package tetris;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+// Plays 10,000 pieces after a warm-up and fails if spawn, rotate, move, lock or the events they publish
+// allocated anything.
+// The best of a few windows is taken: real per-piece garbage shows in every window, while the JVM
+// occasionally charges a one-off allocation to the thread.
+// Run with: java -cp game/target/classes tetris.AllocationCheck
+public class AllocationCheck {
+    private static final int WARMUP_PIECES = 50_000;
+    private static final int MEASURED_PIECES = 10_000;
+    private static final int WINDOWS = 5;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        long allocated = measure();
+        if (allocated > 0) {
+            System.err.println("FAIL: engine allocated " + allocated + " bytes over " + MEASURED_PIECES + " pieces");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    // Bytes allocated over the best measured window, after the warm-up.
+    static long measure() {
+        TetrisBoard board = new TetrisBoard(10, 20);
+        EventCounter events = new EventCounter();
+        board.addListener(events);
+        Random random = new Random(42);
+
+        play(board, random, WARMUP_PIECES);
+
+        long allocated = Long.MAX_VALUE;
+        int pieces = 0;
+        for (int w = 0; w < WINDOWS && allocated > 0; w++) {
+            long before = allocatedBytes();
+            long overhead = allocatedBytes() - before;
+            before = allocatedBytes();
+            pieces = play(board, random, MEASURED_PIECES);
+            allocated = Math.min(allocated, allocatedBytes() - before - overhead);
+        }
+
+        System.out.println("pieces=" + pieces + " events=" + events.count + " allocatedBytes=" + allocated);
+        return allocated;
+    }
+
+    private static int play(TetrisBoard board, Random random, int pieces) {
+        int dropped = 0;
+        while (dropped < pieces) {
+            if (!board.isStarted()) board.start();
+            for (int moves = random.nextInt(8); moves > 0; moves--) {
+                switch (random.nextInt(6)) {
+                    case 0: board.moveLeft(); break;
+                    case 1: board.moveRight(); break;
+                    case 2: board.rotateLeft(); break;
+                    case 3: board.rotateRight(); break;
+                    case 4: board.softDrop(); break;
+                    default: board.tick(); break;
+                }
+            }
+            board.dropDown();
+            board.tick();
+            dropped++;
+        }
+        return dropped;
+    }
+
+    private static final class EventCounter implements BoardListener {
+        long count;
+
+        public void pieceSpawned(TetrisBoard board, Tetromino piece) { count++; }
+        public void pieceMoved(TetrisBoard board, int fromX, int fromY) { count++; }
+        public void pieceRotated(TetrisBoard board, Tetromino from) { count++; }
+        public void pieceLocked(TetrisBoard board, Tetromino piece, int x, int y) { count++; }
+        public void linesCleared(TetrisBoard board, int[] rows, int count) { this.count += count; }
+        public void scoreChanged(TetrisBoard board, int score) { count++; }
+        public void gameOver(TetrisBoard board) { count++; }
+    }
+
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
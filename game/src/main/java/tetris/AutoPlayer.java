@@ -0,0 +1,303 @@
+package tetris;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Beam-search bot. All lookahead runs on TetrisBoard copies; only the chosen placement touches the live board.
+public class AutoPlayer implements Simulation.Policy {
+    public interface Heuristic {
+        double evaluate(TetrisBoard board, int linesCleared);
+    }
+
+    public static class WeightedHeuristic implements Heuristic {
+        public final double height, lines, holes, bumpiness;
+
+        public WeightedHeuristic(double height, double lines, double holes, double bumpiness) {
+            this.height = height;
+            this.lines = lines;
+            this.holes = holes;
+            this.bumpiness = bumpiness;
+        }
+
+        public static WeightedHeuristic standard() {
+            return new WeightedHeuristic(-0.510066, 0.760666, -0.35663, -0.184483);
+        }
+
+        // Every cell under a column's height is either filled or a hole, so holes only need the filled cells
+        // counted up to the tallest column rather than a scan of the whole board.
+        public double evaluate(TetrisBoard board, int linesCleared) {
+            int aggregate = 0, bumps = 0, top = 0, previous = 0;
+            for (int x = 0; x < board.getCols(); x++) {
+                int h = board.columnHeight(x);
+                aggregate += h;
+                if (x > 0) bumps += Math.abs(h - previous);
+                top = Math.max(top, h);
+                previous = h;
+            }
+            int filled = 0;
+            for (int y = 0; y < top; y++) filled += Long.bitCount(board.rowBits(y));
+            int holeCount = aggregate - filled;
+            return height * aggregate + lines * linesCleared + holes * holeCount + bumpiness * bumps;
+        }
+    }
+
+    // A final resting place for the current piece and the inputs that reach it from where the piece is now.
+    public static class Placement {
+        public final int rotations;
+        public final int shift;
+        public final TetrisBoard result;
+
+        Placement(int rotations, int shift, TetrisBoard result) {
+            this.rotations = rotations;
+            this.shift = shift;
+            this.result = result;
+        }
+
+        public void applyTo(TetrisBoard board) {
+            forEachInput(in -> in.apply(board));
+        }
+
+        // The moves that make this placement, in the order applyTo plays them.
+        public void forEachInput(Consumer<Replay.Input> out) {
+            for (int i = 0; i < rotations; i++) out.accept(Replay.Input.ROTATE_LEFT);
+            for (int i = 0; i > rotations; i--) out.accept(Replay.Input.ROTATE_RIGHT);
+            for (int i = 0; i < shift; i++) out.accept(Replay.Input.MOVE_RIGHT);
+            for (int i = 0; i > shift; i--) out.accept(Replay.Input.MOVE_LEFT);
+            out.accept(Replay.Input.DROP_DOWN);
+        }
+    }
+
+    // Shortest rotation sequences first, so each reachable orientation keeps its cheapest input.
+    private static final int[] ROTATION_SEQUENCES = {0, 1, -1, 2, -2, 3, -3};
+
+    // Every distinct locked position of the current piece reachable by rotating in place, shifting and hard dropping.
+    public static List<Placement> placements(TetrisBoard board) {
+        List<Placement> out = new ArrayList<>();
+        Tetromino start = board.getCurrentPiece();
+        if (!board.isStarted() || start == null || start.getType() == TetrisBoard.Tetrominoes.NoShape) return out;
+        boolean[] orientations = new boolean[4];
+        Set<Long> positions = new HashSet<>();
+        for (int seq : ROTATION_SEQUENCES) {
+            TetrisBoard rotated = board.copy();
+            if (!rotate(rotated, seq) || orientations[rotated.getCurrentPiece().rotation()]) continue;
+            orientations[rotated.getCurrentPiece().rotation()] = true;
+            addDrop(out, positions, rotated, seq, 0);
+            for (int dir = -1; dir <= 1; dir += 2) {
+                TetrisBoard probe = rotated.copy();
+                for (int shift = dir; ; shift += dir) {
+                    int x = probe.getCurX();
+                    if (dir < 0) probe.moveLeft(); else probe.moveRight();
+                    if (probe.getCurX() == x) break;
+                    addDrop(out, positions, probe, seq, shift);
+                }
+            }
+        }
+        return out;
+    }
+
+    private static boolean rotate(TetrisBoard board, int seq) {
+        for (int i = 0; i < Math.abs(seq); i++) {
+            Tetromino before = board.getCurrentPiece();
+            if (seq > 0) board.rotateLeft(); else board.rotateRight();
+            if (board.getCurrentPiece() == before) return false;
+        }
+        return true;
+    }
+
+    private static void addDrop(List<Placement> out, Set<Long> positions, TetrisBoard from, int rotations, int shift) {
+        TetrisBoard result = from.copy();
+        result.dropDown();
+        if (positions.add(stackKey(result, result.getScore()))) out.add(new Placement(rotations, shift, result));
+    }
+
+    // The board's Zobrist hash with a line count folded in, so equal stacks only match when they scored alike.
+    private static long stackKey(TetrisBoard board, int lines) {
+        return board.getStackHash() + lines * 0x9E3779B97F4A7C15L;
+    }
+
+    private static final TetrisBoard.Tetrominoes[] PIECE_TYPES =
+            Arrays.copyOfRange(TetrisBoard.Tetrominoes.values(), 1, TetrisBoard.Tetrominoes.values().length);
+
+    private static class Node {
+        final Placement root;
+        final TetrisBoard board;
+        final double score;
+
+        Node(Placement root, TetrisBoard board, double score) {
+            this.root = root;
+            this.board = board;
+            this.score = score;
+        }
+    }
+
+    private final Heuristic heuristic;
+    private final int depth;
+    private final int beamWidth;
+    private final ForkJoinPool pool;
+    private final TranspositionTable table;
+    private int lastPiece = -1;
+    private long decisions;
+    private long decisionNanos;
+
+    // Plies for the current piece and those in the board's preview play the pieces shown. The generator's later
+    // pieces stay hidden: a ply past the preview scores each board by its best placement averaged over the seven
+    // piece types, and the search ends there, since every further unseen piece would multiply the work by seven.
+    // A null pool searches on the calling thread, which suits batch runs that are already parallel per game.
+    public AutoPlayer(Heuristic heuristic, int depth, int beamWidth, ForkJoinPool pool) {
+        this(heuristic, depth, beamWidth, pool, null);
+    }
+
+    // Evaluations are cached in table, when given, and any number of players may share one as long as they all
+    // use the same heuristic. Stacks reached by different move orders are then evaluated once. Each game the
+    // player sees starting (through act) opens a new table generation.
+    public AutoPlayer(Heuristic heuristic, int depth, int beamWidth, ForkJoinPool pool, TranspositionTable table) {
+        if (depth < 1 || beamWidth < 1) throw new IllegalArgumentException("depth and beamWidth must be positive");
+        this.heuristic = heuristic;
+        this.depth = depth;
+        this.beamWidth = beamWidth;
+        this.pool = pool;
+        this.table = table;
+    }
+
+    public AutoPlayer() {
+        this(WeightedHeuristic.standard(), 2, 8, ForkJoinPool.commonPool());
+    }
+
+    public long getDecisions() { return decisions; }
+    public long getDecisionNanos() { return decisionNanos; }
+
+    public double decisionsPerSecond() {
+        return decisionNanos == 0 ? 0 : decisions * 1e9 / decisionNanos;
+    }
+
+    // Places each newly spawned piece once; ticks in between are left to gravity.
+    public void act(TetrisBoard board) {
+        act(board, in -> in.apply(board));
+    }
+
+    // Like act, but hands each move to inputs to apply, so the caller can record what the bot played.
+    public void act(TetrisBoard board, Consumer<Replay.Input> inputs) {
+        if (!board.isStarted() || board.isPaused() || board.getPieceCount() == lastPiece) return;
+        Tetromino piece = board.getCurrentPiece();
+        if (piece == null || piece.getType() == TetrisBoard.Tetrominoes.NoShape) return;
+        if (table != null && (lastPiece < 0 || board.getPieceCount() < lastPiece)) table.newGeneration();
+        lastPiece = board.getPieceCount();
+        Placement best = decide(board);
+        if (best != null) best.forEachInput(inputs);
+    }
+
+    public Placement decide(TetrisBoard live) {
+        long start = System.nanoTime();
+        TetrisBoard origin = live.copy();
+        int baseLines = origin.getScore();
+        int known = 1 + origin.getPreviewLength();
+        List<Node> beam = Collections.singletonList(new Node(null, origin, 0));
+        for (int ply = 0; ply < Math.min(depth, known); ply++) {
+            List<Node> next = expand(beam, baseLines);
+            if (next.isEmpty()) break;
+            beam = best(next);
+        }
+        if (depth > known && beam.get(0).root != null) beam = best(expectation(beam, baseLines));
+        decisions++;
+        decisionNanos += System.nanoTime() - start;
+        return beam.get(0).root;
+    }
+
+    private List<Node> best(List<Node> nodes) {
+        nodes.sort(Comparator.comparingDouble((Node n) -> n.score).reversed());
+        return nodes.size() > beamWidth ? nodes.subList(0, beamWidth) : nodes;
+    }
+
+    private List<Node> expand(List<Node> beam, int baseLines) {
+        if (pool == null) return beam.stream().flatMap(n -> children(n, baseLines)).collect(Collectors.toList());
+        return pool.submit(() -> beam.parallelStream()
+                .flatMap(n -> placements(n.board).parallelStream().map(p -> child(n, p, baseLines)))
+                .collect(Collectors.toList())).join();
+    }
+
+    private Stream<Node> children(Node parent, int baseLines) {
+        return placements(parent.board).stream().map(p -> child(parent, p, baseLines));
+    }
+
+    private List<Node> expectation(List<Node> beam, int baseLines) {
+        if (pool == null) return beam.stream().map(n -> expected(n, baseLines)).collect(Collectors.toList());
+        return pool.submit(() -> beam.parallelStream().map(n -> expected(n, baseLines)).collect(Collectors.toList())).join();
+    }
+
+    // The node rescored as if its current piece, which the preview did not show, were any of the seven types
+    // with equal chance; a type that cannot spawn counts as a lost game.
+    private Node expected(Node n, int baseLines) {
+        if (!n.board.isStarted()) return n;
+        double sum = 0;
+        for (TetrisBoard.Tetrominoes type : PIECE_TYPES) {
+            TetrisBoard b = n.board.copy();
+            double best = Double.NEGATIVE_INFINITY;
+            if (b.respawn(type)) {
+                for (Placement p : placements(b)) best = Math.max(best, evaluate(p.result, p.result.getScore() - baseLines));
+            }
+            sum += best;
+        }
+        return new Node(n.root, n.board, sum / PIECE_TYPES.length);
+    }
+
+    private Node child(Node parent, Placement p, int baseLines) {
+        TetrisBoard b = p.result;
+        if (b.isStarted() && b.getCurrentPiece().getType() == TetrisBoard.Tetrominoes.NoShape) b.tick();
+        double score = b.isStarted() ? evaluate(b, b.getScore() - baseLines) : Double.NEGATIVE_INFINITY;
+        return new Node(parent.root != null ? parent.root : p, b, score);
+    }
+
+    private double evaluate(TetrisBoard b, int lines) {
+        if (table == null) return heuristic.evaluate(b, lines);
+        long key = stackKey(b, lines);
+        double score = table.get(key, 0);
+        if (Double.isNaN(score)) {
+            score = heuristic.evaluate(b, lines);
+            table.put(key, 0, score);
+        }
+        return score;
+    }
+
+    // Usage: java -cp game/target/classes tetris.AutoPlayer [games] [depth] [beamWidth] [maxPieces] [--bag] [--tt=entries]
+    // With --tt every game shares one transposition table.
+    public static void main(String[] args) {
+        String pieces = Arrays.asList(args).contains("--bag") ? "bag" : "uniform";
+        TranspositionTable table = Arrays.stream(args).filter(a -> a.startsWith("--tt=")).findFirst()
+                .map(a -> new TranspositionTable(Integer.parseInt(a.substring(5)))).orElse(null);
+        String[] pos = Arrays.stream(args).filter(a -> !a.startsWith("--")).toArray(String[]::new);
+        int games = pos.length > 0 ? Integer.parseInt(pos[0]) : 8;
+        int depth = pos.length > 1 ? Integer.parseInt(pos[1]) : 2;
+        int beam = pos.length > 2 ? Integer.parseInt(pos[2]) : 8;
+        int maxPieces = pos.length > 3 ? Integer.parseInt(pos[3]) : 500;
+
+        ConcurrentLinkedQueue<AutoPlayer> players = new ConcurrentLinkedQueue<>();
+        Simulation sim = new Simulation(10, 20, maxPieces, Runtime.getRuntime().availableProcessors(),
+                seed -> PieceGenerator.of(pieces, seed));
+        Simulation.Report report = sim.run(seed -> {
+            AutoPlayer p = new AutoPlayer(WeightedHeuristic.standard(), depth, beam, null, table);
+            players.add(p);
+            return p;
+        }, 1, games);
+
+        long decisions = 0, nanos = 0;
+        for (AutoPlayer p : players) { decisions += p.decisions; nanos += p.decisionNanos; }
+        double perSecond = nanos == 0 ? 0 : decisions * 1e9 / nanos;
+        System.out.println(report.summary());
+        // At 20G a piece reaches the floor on the frame it spawns, so one decision per 60 Hz frame is the floor.
+        System.out.println(String.format(Locale.ROOT, "decisions=%d decisions/s/thread=%.0f 20G@60Hz=%s",
+                decisions, perSecond, perSecond >= 60 ? "ok" : "too slow"));
+        System.out.println("scores=" + Arrays.toString(Arrays.stream(report.games).mapToInt(g -> g.score).toArray()));
+        if (table != null) System.out.println(table.summary());
+    }
+}
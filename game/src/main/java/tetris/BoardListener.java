@@ -0,0 +1,22 @@
+package tetris;
+
+// Callbacks from TetrisBoard, made on the thread that drives the board, right after the change. Every method
+// has an empty default so a listener implements only what it needs. Arguments are only valid during the call.
+public interface BoardListener {
+    default void pieceSpawned(TetrisBoard board, Tetromino piece) {}
+
+    // Any change of position: shifts, soft drops, gravity and hard drops.
+    default void pieceMoved(TetrisBoard board, int fromX, int fromY) {}
+
+    default void pieceRotated(TetrisBoard board, Tetromino from) {}
+
+    // Before any line it completes is cleared; x and y are where the piece locked.
+    default void pieceLocked(TetrisBoard board, Tetromino piece, int x, int y) {}
+
+    // rows holds count row indices, ascending, as they were before the clear.
+    default void linesCleared(TetrisBoard board, int[] rows, int count) {}
+
+    default void scoreChanged(TetrisBoard board, int score) {}
+
+    default void gameOver(TetrisBoard board) {}
+}
@@ -0,0 +1,11 @@
+package tetris;
+
+import java.awt.Graphics;
+import java.awt.Rectangle;
+
+public interface BoardRenderer {
+    void render(Graphics g, TetrisBoard board);
+
+    // Area the next render will change, relative to the board origin; null means all of it.
+    default Rectangle damage(TetrisBoard board) { return null; }
+}
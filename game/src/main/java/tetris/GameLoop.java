@@ -0,0 +1,135 @@
+package tetris;
+
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Fixed-timestep loop on a thread of its own. The simulation advances in whole steps of stepNanos, however
+// long rendering takes, and one frame is rendered after each batch of steps. Running update and render on the
+// same thread keeps whatever they touch single-writer without locking.
+final class GameLoop implements Runnable {
+    // Steps run back to back before the loop gives up on catching up and drops the lost time instead.
+    private static final int MAX_CATCH_UP = 5;
+    private static final long REPORT_NANOS = 1_000_000_000L;
+
+    private final long stepNanos;
+    private final Runnable update;
+    private final Runnable render;
+    private final Consumer<FrameStats> statsListener;
+    private volatile Consumer<RuntimeException> failureListener;
+    private volatile boolean running;
+    private Thread thread;
+
+    // Frame intervals since the last report.
+    private long frames;
+    private double sum, sumSquares, max;
+
+    GameLoop(int stepsPerSecond, Runnable update, Runnable render, Consumer<FrameStats> statsListener) {
+        if (stepsPerSecond < 1) throw new IllegalArgumentException("stepsPerSecond must be positive: " + stepsPerSecond);
+        this.stepNanos = 1_000_000_000L / stepsPerSecond;
+        this.update = update;
+        this.render = render;
+        this.statsListener = statsListener;
+    }
+
+    long getStepNanos() { return stepNanos; }
+
+    // Told, on the loop thread, about an exception from update or render after the loop has stopped for it.
+    void setFailureListener(Consumer<RuntimeException> listener) { this.failureListener = listener; }
+
+    synchronized void start(String name) {
+        if (thread != null) return;
+        running = true;
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    synchronized void stop() {
+        running = false;
+        if (thread != null) LockSupport.unpark(thread);
+        thread = null;
+    }
+
+    // An exception from update or render stops the loop rather than leaving it half through a step. It is
+    // reported instead of escaping, so the thread does not just vanish and leave a frozen window behind.
+    @Override
+    public void run() {
+        try {
+            loop();
+        } catch (RuntimeException e) {
+            running = false;
+            System.err.println(Thread.currentThread().getName() + " stopped:");
+            e.printStackTrace();
+            Consumer<RuntimeException> listener = failureListener;
+            if (listener != null) listener.accept(e);
+        }
+    }
+
+    private void loop() {
+        long next = System.nanoTime();
+        long lastFrame = next, lastReport = next;
+        while (running) {
+            long now = System.nanoTime();
+            int steps = 0;
+            while (now - next >= 0 && steps < MAX_CATCH_UP) {
+                update.run();
+                next += stepNanos;
+                steps++;
+            }
+            if (now - next >= 0) {
+                // Frames that never get rendered: the steps caught up in this batch, then any time dropped.
+                if (Metrics.ENABLED) Metrics.FRAMES_DROPPED.mark((now - next) / stepNanos + 1);
+                next = now + stepNanos;
+            }
+            if (steps > 1 && Metrics.ENABLED) Metrics.FRAMES_DROPPED.mark(steps - 1);
+            if (steps > 0) {
+                render.run();
+                long end = System.nanoTime();
+                record(end - lastFrame);
+                lastFrame = end;
+                if (end - lastReport >= REPORT_NANOS) {
+                    report(end - lastReport);
+                    lastReport = end;
+                }
+            }
+            long wait = next - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(this, wait);
+        }
+    }
+
+    private void record(long intervalNanos) {
+        double ms = intervalNanos / 1e6;
+        frames++;
+        sum += ms;
+        sumSquares += ms * ms;
+        max = Math.max(max, ms);
+    }
+
+    private void report(long windowNanos) {
+        if (frames > 0 && statsListener != null) {
+            double mean = sum / frames;
+            double jitter = Math.sqrt(Math.max(0, sumSquares / frames - mean * mean));
+            statsListener.accept(new FrameStats(frames * 1e9 / windowNanos, mean, jitter, max));
+        }
+        frames = 0;
+        sum = sumSquares = max = 0;
+    }
+
+    // Frame pacing over one report window: jitter is the standard deviation of the frame interval.
+    static final class FrameStats {
+        final double fps, meanMillis, jitterMillis, maxMillis;
+
+        FrameStats(double fps, double meanMillis, double jitterMillis, double maxMillis) {
+            this.fps = fps;
+            this.meanMillis = meanMillis;
+            this.jitterMillis = jitterMillis;
+            this.maxMillis = maxMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%.0f fps  %.1f ms ± %.1f  max %.1f", fps, meanMillis, jitterMillis, maxMillis);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package tetris;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Headless multi-session server: every TCP connection plays a TetrisBoard of its own. Each connection is served
+// by one thread doing blocking reads, a virtual thread where the runtime has them (Java 21+). Gravity for all
+// sessions runs on one shared scheduler thread, which spreads sessions over slots so each run only ticks a
+// slice of them. The session lock serializes input and gravity, and the two rarely contend.
+//
+// Protocol, big-endian. The client sends 5-byte inputs: op (byte), seq (int). Each input is answered with a
+// 13-byte ack: seq (int), score (int), curX (short), curY (short), state (byte, PLAYING or OVER). QUIT or EOF
+// ends the session; after game over the client sends RESTART to play on.
+public final class GameServer {
+    static final int QUIT = 0, LEFT = 1, RIGHT = 2, ROTATE_LEFT = 3, ROTATE_RIGHT = 4, SOFT_DROP = 5,
+            HARD_DROP = 6, RESTART = 7;
+    static final int INPUT_BYTES = 5, ACK_BYTES = 13;
+    static final int PLAYING = 0, OVER = 1;
+
+    private static final int COLS = 10, ROWS = 20;
+    private static final int BACKLOG = 4096;
+    private static final long ACCEPT_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long SLOT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    // Platform threads only serve one blocking socket each, so they get a small stack.
+    private static final long PLATFORM_STACK_BYTES = 256 * 1024;
+
+    private static final class Session {
+        final TetrisBoard board;
+        final int slot;
+
+        Session(TetrisBoard board, int slot) {
+            this.board = board;
+            this.slot = slot;
+        }
+    }
+
+    private final ServerSocket server;
+    private final ExecutorService connections = connectionExecutor();
+    private final ScheduledExecutorService gravity;
+    private final List<Set<Session>> slots;
+    // Open session sockets, closed by close(): shutting the executor down does not interrupt a platform thread
+    // blocked in a socket read.
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final AtomicLong nextSeed = new AtomicLong(1);
+    // Recorded on the gravity thread: how late each session's tick ran against its due time.
+    private final Metrics.Histogram tickLag = new Metrics.Histogram("TickLag", "Millis", 1e6);
+    private final Thread acceptor;
+    private long round;
+    private long started;
+
+    public GameServer(int port, long gravityMillis) throws IOException {
+        int count = (int) Math.max(1, TimeUnit.MILLISECONDS.toNanos(gravityMillis) / SLOT_NANOS);
+        this.slots = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) slots.add(ConcurrentHashMap.newKeySet());
+        this.server = new ServerSocket(port, BACKLOG);
+        this.gravity = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "tetris-gravity");
+            t.setDaemon(true);
+            return t;
+        });
+        this.acceptor = new Thread(this::acceptLoop, "tetris-accept");
+        acceptor.setDaemon(true);
+    }
+
+    // One thread per task: virtual where available, found reflectively so the build stays on Java 17.
+    static ExecutorService connectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger n = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(null, r, "tetris-session-" + n.incrementAndGet(), PLATFORM_STACK_BYTES);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public int getPort() { return server.getLocalPort(); }
+    public int getSessions() { return sessions.get(); }
+
+    public void start() {
+        started = System.nanoTime();
+        gravity.scheduleAtFixedRate(this::gravity, SLOT_NANOS, SLOT_NANOS, TimeUnit.NANOSECONDS);
+        acceptor.start();
+    }
+
+    public void close() {
+        try {
+            server.close();
+        } catch (IOException ignore) {}
+        gravity.shutdownNow();
+        connections.shutdownNow();
+        for (Socket socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException ignore) {}
+        }
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                connections.execute(() -> serve(socket));
+            } catch (RejectedExecutionException | IOException e) {
+                if (server.isClosed()) return;
+                // Typically out of file descriptors: back off rather than spin until sessions close.
+                System.err.println("accept failed: " + e);
+                LockSupport.parkNanos(ACCEPT_BACKOFF_NANOS);
+            }
+        }
+    }
+
+    // Fixed-rate runs each tick one slot; a run that starts late shows up as lag for every session in it.
+    private void gravity() {
+        long due = started + (round + 1) * SLOT_NANOS;
+        Set<Session> slot = slots.get((int) (round++ % slots.size()));
+        for (Session s : slot) {
+            synchronized (s) {
+                s.board.tick();
+            }
+            tickLag.record(System.nanoTime() - due);
+        }
+    }
+
+    private void serve(Socket socket) {
+        sockets.add(socket);
+        // A close() that ran before the add did not see this socket.
+        if (server.isClosed()) {
+            try {
+                socket.close();
+            } catch (IOException ignore) {}
+            sockets.remove(socket);
+            return;
+        }
+        long seed = nextSeed.getAndIncrement();
+        Session session = new Session(new TetrisBoard(COLS, ROWS, seed), (int) (seed % slots.size()));
+        TetrisBoard board = session.board;
+        synchronized (session) {
+            board.start();
+        }
+        slots.get(session.slot).add(session);
+        sessions.incrementAndGet();
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            int op;
+            while ((op = in.read()) > QUIT) {
+                int seq = in.readInt();
+                int score, x, y;
+                boolean over;
+                synchronized (session) {
+                    if (!apply(board, op)) break;
+                    score = board.getScore();
+                    x = board.getCurX();
+                    y = board.getCurY();
+                    over = !board.isStarted();
+                }
+                out.writeInt(seq);
+                out.writeInt(score);
+                out.writeShort(x);
+                out.writeShort(y);
+                out.writeByte(over ? OVER : PLAYING);
+                // Acks for inputs that arrived together go out in one write.
+                if (in.available() == 0) out.flush();
+            }
+        } catch (IOException ignore) {
+        } finally {
+            slots.get(session.slot).remove(session);
+            sessions.decrementAndGet();
+            sockets.remove(socket);
+        }
+    }
+
+    // Caller holds the session lock. False for an unknown op, which ends the session.
+    private static boolean apply(TetrisBoard board, int op) {
+        switch (op) {
+            case LEFT: board.moveLeft(); return true;
+            case RIGHT: board.moveRight(); return true;
+            case ROTATE_LEFT: board.rotateLeft(); return true;
+            case ROTATE_RIGHT: board.rotateRight(); return true;
+            case SOFT_DROP: board.softDrop(); return true;
+            case HARD_DROP: board.dropDown(); return true;
+            case RESTART:
+                if (!board.isStarted()) board.start();
+                return true;
+            default: return false;
+        }
+    }
+
+    // Closes the current interval of the tick-lag histogram and describes it.
+    String status(double seconds) {
+        tickLag.roll(seconds);
+        return String.format(Locale.ROOT, "sessions=%d ticks/s=%.0f tick-lag p50=%.2f p99=%.2f max=%.2f ms",
+                getSessions(), tickLag.count() / seconds, tickLag.p50(), tickLag.p99(), tickLag.max());
+    }
+
+    // Usage: java -cp game/target/classes tetris.GameServer [port] [gravityMillis]
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+        long gravityMillis = args.length > 1 ? Long.parseLong(args[1]) : 400;
+        GameServer server = new GameServer(port, gravityMillis);
+        server.start();
+        System.out.println("listening on port " + server.getPort());
+        for (long last = System.nanoTime(); ; ) {
+            Thread.sleep(1000);
+            long now = System.nanoTime();
+            System.out.println(server.status((now - last) / 1e9));
+            last = now;
+        }
+    }
+}
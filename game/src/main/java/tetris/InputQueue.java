@@ -0,0 +1,66 @@
+package tetris;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Single-producer single-consumer ring of timestamped key events: the EDT offers, the game loop polls.
+// Neither side locks or allocates. head and tail only grow; each side publishes its index with a release
+// store (lazySet) after touching the slot, and caches the other side's index until the ring looks full or empty.
+final class InputQueue {
+    static final int RELEASED = 1 << 8;
+
+    private final int mask;
+    private final int[] codes;
+    private final long[] times;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long dropped;
+
+    // Producer side.
+    private long headCache;
+    // Consumer side.
+    private long tailCache;
+    private long lastTime;
+
+    InputQueue(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.codes = new int[capacity];
+        this.times = new long[capacity];
+    }
+
+    // Producer only. A full ring drops the event and counts it rather than blocking the EDT.
+    boolean offer(int code, long timeNanos) {
+        long t = tail.get();
+        if (t - headCache > mask) {
+            headCache = head.get();
+            if (t - headCache > mask) {
+                dropped++;
+                return false;
+            }
+        }
+        int i = (int) t & mask;
+        codes[i] = code;
+        times[i] = timeNanos;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    // Consumer only. The next event's code, or -1 when the ring is empty; its timestamp is then lastTime().
+    int poll() {
+        long h = head.get();
+        if (h == tailCache) {
+            tailCache = tail.get();
+            if (h == tailCache) return -1;
+        }
+        int i = (int) h & mask;
+        int code = codes[i];
+        lastTime = times[i];
+        head.lazySet(h + 1);
+        return code;
+    }
+
+    long lastTime() { return lastTime; }
+    long dropped() { return dropped; }
+}
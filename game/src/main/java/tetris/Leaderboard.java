@@ -0,0 +1,540 @@
+package tetris;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Scores go to an append-only log next to the snapshot file; the index is rebuilt once at open and
+// a background task periodically folds the log back into the snapshot.
+// A single writer thread opens the store, indexes submitted scores and group-commits them to the log
+// with one fsync per batch; reads never touch the disk.
+// Several processes may share one store: every log append and compaction happens under an exclusive
+// FileChannel lock on <store>.lock, after first merging whatever other processes appended since the
+// last visit. The lock file also holds a generation counter that compaction bumps when it truncates the log.
+// File locks belong to the whole JVM, so instances on one store in the same process also share one monitor.
+// A store named *.bin is kept in the binary LeaderboardFile format and memory-mapped instead of parsed:
+// the index then only holds scores that beat the snapshot, and queries merge the two.
+public class Leaderboard {
+    public static class Entry {
+        public final String name;
+        public final int score;
+        public Entry(String name, int score) { this.name = name; this.score = score; }
+    }
+
+    static final Comparator<Entry> RANKING = (a, b) -> a.score != b.score ? Integer.compare(b.score, a.score) : a.name.compareTo(b.name);
+
+    private static final long DEFAULT_COMPACT_INTERVAL_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final long REFRESH_INTERVAL_MS = 2000;
+    private static final int TOP_CACHE_SIZE = 10;
+    private static final int MAX_BATCH = 512;
+    private static final long SHUTDOWN_FLUSH_MS = 5000;
+
+    private static final class Pending {
+        final String name;
+        final int score;
+        final CompletableFuture<Void> committed = new CompletableFuture<>();
+        final long submitted = Metrics.ENABLED ? System.nanoTime() : 0;
+
+        Pending(String name, int score) { this.name = name; this.score = score; }
+    }
+
+    private static final Pending CLOSE = new Pending("", 0);
+    private static final ConcurrentMap<String, Object> STORE_LOCKS = new ConcurrentHashMap<>();
+
+    private final File store;
+    private final File log;
+    private final File lockFile;
+    private final boolean binary;
+    private final Map<String, Entry> best = new HashMap<>();
+    private final Map<String, Entry> shadowed = new HashMap<>();
+    // The shadowed snapshot entries in rank order, so countBefore can discount them in O(log n).
+    private final RankTree<Entry> shadowedRanking = new RankTree<>(RANKING);
+    private final RankTree<Entry> ranking = new RankTree<>(RANKING);
+    private final List<Entry> topCache = new ArrayList<>(TOP_CACHE_SIZE + 1);
+    private final ScheduledExecutorService maintenance;
+    private final Object logLock;
+    private final BlockingQueue<Pending> pending = new LinkedBlockingQueue<>();
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    private final Thread writer;
+    private final Thread shutdownHook;
+    private volatile CompletableFuture<Void> lastCommit = CompletableFuture.completedFuture(null);
+    private volatile boolean closed;
+    private FileChannel logChannel;
+    private FileChannel lockChannel;
+    private LeaderboardFile base;
+    private long logOffset;
+    private long generation = -1;
+    private long commitBatches;
+    private long committedScores;
+
+    public Leaderboard(String path) {
+        this(path, DEFAULT_COMPACT_INTERVAL_MS);
+    }
+
+    public Leaderboard(String path, long compactIntervalMillis) {
+        this.store = new File(path);
+        this.log = new File(path + ".log");
+        this.lockFile = new File(path + ".lock");
+        this.binary = path.endsWith(".bin");
+        this.logLock = STORE_LOCKS.computeIfAbsent(lockFile.getAbsoluteFile().toPath().normalize().toString(), k -> new Object());
+        if (Metrics.ENABLED) Metrics.LEADERBOARD_FILE_BYTES.set(() -> store.length() + log.length());
+        writer = new Thread(this::writeLoop, "leaderboard-writer");
+        writer.setDaemon(true);
+        writer.start();
+        shutdownHook = new Thread(this::flush, "leaderboard-flush");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "leaderboard-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        maintenance.scheduleWithFixedDelay(this::compact, compactIntervalMillis, compactIntervalMillis, TimeUnit.MILLISECONDS);
+        maintenance.scheduleWithFixedDelay(this::refresh, REFRESH_INTERVAL_MS, REFRESH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void open() {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        synchronized (logLock) {
+            try {
+                FileLock lock = lockStore(false);
+                try {
+                    catchUp();
+                    dropTornTail();
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException ignore) {}
+        }
+        if (Metrics.ENABLED) Metrics.LEADERBOARD_LOAD.record(System.nanoTime() - start);
+    }
+
+    // Picks up scores other processes have committed since our last look.
+    public void refresh() {
+        if (!ready.isDone()) return;
+        synchronized (logLock) {
+            try {
+                FileLock lock = lockStore(true);
+                try {
+                    catchUp();
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException ignore) {}
+        }
+    }
+
+    // Caller holds logLock and a file lock.
+    private FileLock lockStore(boolean shared) throws IOException {
+        if (lockChannel == null) {
+            File parent = lockFile.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) parent.mkdirs();
+            lockChannel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            logChannel = FileChannel.open(log.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        try {
+            return lockChannel.lock(0, Long.MAX_VALUE, shared);
+        } catch (OverlappingFileLockException e) {
+            throw new IOException("store is already locked elsewhere in this JVM: " + lockFile, e);
+        }
+    }
+
+    private long readGeneration() throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(Long.BYTES);
+        while (b.hasRemaining() && lockChannel.read(b, b.position()) > 0) {}
+        return b.hasRemaining() ? 0 : b.getLong(0);
+    }
+
+    // Caller holds logLock and a file lock. A new generation means the log was folded into the snapshot
+    // and truncated, so the snapshot is merged again (max-merge makes that idempotent) and the log reread.
+    // Only whole lines are consumed: a record without its line separator is still being written, or was torn
+    // by a crash, and logOffset stays in front of it.
+    private void catchUp() throws IOException {
+        long gen = readGeneration();
+        long end = logChannel.size();
+        if (gen != generation || end < logOffset) {
+            if (binary) {
+                synchronized (this) { loadSnapshot(); }
+            } else {
+                try (BufferedReader br = new BufferedReader(new FileReader(store))) {
+                    synchronized (this) { replay(br); }
+                } catch (FileNotFoundException ignore) {}
+            }
+            generation = gen;
+            logOffset = 0;
+        }
+        if (end <= logOffset) return;
+        ByteBuffer tail = ByteBuffer.allocate((int) (end - logOffset));
+        while (tail.hasRemaining() && logChannel.read(tail, logOffset + tail.position()) > 0) {}
+        int full = tail.position();
+        while (full > 0 && tail.get(full - 1) != '\n') full--;
+        if (full == 0) return;
+        BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(tail.array(), 0, full), Charset.defaultCharset()));
+        synchronized (this) { replay(br); }
+        logOffset += full;
+    }
+
+    // Caller holds logLock and the exclusive file lock, after catchUp. Nobody else can be appending, so
+    // anything past logOffset is a record torn by a crash; it is cut off rather than glued onto the next one.
+    private void dropTornTail() throws IOException {
+        if (logChannel.size() > logOffset) {
+            logChannel.truncate(logOffset);
+            logChannel.force(false);
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            open();
+        } finally {
+            ready.complete(null);
+        }
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(pending.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            pending.drainTo(batch, MAX_BATCH - 1);
+            boolean closing = batch.remove(CLOSE);
+            if (!batch.isEmpty()) commit(batch);
+            batch.clear();
+            if (closing) return;
+        }
+    }
+
+    private void commit(List<Pending> batch) {
+        StringBuilder sb = new StringBuilder(batch.size() * 24);
+        for (Pending p : batch) sb.append(p.name).append(',').append(p.score).append(System.lineSeparator());
+        ByteBuffer bytes = ByteBuffer.wrap(sb.toString().getBytes(Charset.defaultCharset()));
+        try {
+            synchronized (logLock) {
+                FileLock lock = lockStore(false);
+                try {
+                    catchUp();
+                    dropTornTail();
+                    synchronized (this) {
+                        for (Pending p : batch) index(p.name, p.score);
+                    }
+                    long position = logOffset;
+                    while (bytes.hasRemaining()) position += logChannel.write(bytes, position);
+                    logChannel.force(false);
+                    logOffset = position;
+                    commitBatches++;
+                    committedScores += batch.size();
+                } finally {
+                    lock.release();
+                }
+            }
+            for (Pending p : batch) p.committed.complete(null);
+            if (Metrics.ENABLED) {
+                long now = System.nanoTime();
+                for (Pending p : batch) Metrics.LEADERBOARD_ADD.record(now - p.submitted);
+            }
+        } catch (IOException e) {
+            for (Pending p : batch) p.committed.completeExceptionally(e);
+        }
+    }
+
+    private void replay(BufferedReader br) throws IOException {
+        String line;
+        while ((line = br.readLine()) != null) {
+            int comma = line.indexOf(',');
+            if (comma < 0) continue;
+            try {
+                index(line.substring(0, comma), Integer.parseInt(line.substring(comma + 1)));
+            } catch (NumberFormatException ignore) {}
+        }
+    }
+
+    // Caller holds this. Drops the index and maps the current snapshot as its new base.
+    private void loadSnapshot() throws IOException {
+        best.clear();
+        shadowed.clear();
+        shadowedRanking.clear();
+        ranking.clear();
+        topCache.clear();
+        base = store.exists() ? LeaderboardFile.map(store) : null;
+        topCache.addAll(merged(0, TOP_CACHE_SIZE));
+    }
+
+    // A better score always ranks at or above the player's old entry, so the cached top-N never needs a refill.
+    // With a mapped snapshot, a score is only indexed when it beats the player's snapshot entry, which is then shadowed.
+    private void index(String name, int score) {
+        Entry prev = best.get(name);
+        if (prev != null && prev.score >= score) return;
+        if (prev == null && base != null) {
+            int r = base.rankOf(name);
+            if (r >= 0) {
+                Entry old = base.entry(r);
+                if (old.score >= score) return;
+                shadowed.put(name, old);
+                shadowedRanking.add(old);
+            }
+        }
+        if (prev != null) ranking.remove(prev);
+        topCache.removeIf(c -> c.name.equals(name));
+        Entry e = new Entry(name, score);
+        best.put(name, e);
+        ranking.add(e);
+        int rank = 0;
+        while (rank < topCache.size() && RANKING.compare(topCache.get(rank), e) < 0) rank++;
+        if (rank < TOP_CACHE_SIZE) {
+            topCache.add(rank, e);
+            if (topCache.size() > TOP_CACHE_SIZE) topCache.remove(TOP_CACHE_SIZE);
+        }
+    }
+
+    // Caller holds this.
+    private int total() {
+        return ranking.size() + (base == null ? 0 : base.size() - shadowed.size());
+    }
+
+    // Caller holds this. Live entries ranked strictly before probe, across the snapshot and the index.
+    private int countBefore(Entry probe) {
+        int count = ranking.countBefore(probe);
+        if (base != null) {
+            count += base.countBefore(probe) - shadowedRanking.countBefore(probe);
+        }
+        return count;
+    }
+
+    // Caller holds this. Live entries at positions [from, to): both sides are entered by binary search on
+    // countBefore, then merged, so only the requested records of the snapshot are read.
+    private List<Entry> merged(int from, int to) {
+        if (base == null) return ranking.range(from, to);
+        from = Math.max(0, from);
+        to = Math.min(total(), to);
+        List<Entry> out = new ArrayList<>(Math.max(0, to - from));
+        if (from >= to) return out;
+        int b = 0, hi = base.size();
+        while (b < hi) {
+            int mid = (b + hi) >>> 1;
+            if (countBefore(base.entry(mid)) < from) b = mid + 1; else hi = mid;
+        }
+        int o = 0;
+        hi = ranking.size();
+        while (o < hi) {
+            int mid = (o + hi) >>> 1;
+            if (countBefore(ranking.get(mid)) < from) o = mid + 1; else hi = mid;
+        }
+        Entry nextBase = null, nextIndexed = null;
+        while (out.size() < to - from) {
+            while (nextBase == null && b < base.size()) {
+                Entry c = base.entry(b++);
+                if (!shadowed.containsKey(c.name)) nextBase = c;
+            }
+            if (nextIndexed == null && o < ranking.size()) nextIndexed = ranking.get(o++);
+            if (nextIndexed == null || (nextBase != null && RANKING.compare(nextBase, nextIndexed) < 0)) {
+                out.add(nextBase);
+                nextBase = null;
+            } else {
+                out.add(nextIndexed);
+                nextIndexed = null;
+            }
+        }
+        return out;
+    }
+
+    private static String clean(String name) { return name.replace(",", " ").trim(); }
+
+    public CompletableFuture<Void> whenReady() { return ready; }
+
+    long getCommitBatches() { synchronized (logLock) { return commitBatches; } }
+    long getCommittedScores() { synchronized (logLock) { return committedScores; } }
+
+    public List<Entry> load() {
+        ready.join();
+        synchronized (this) {
+            return merged(0, total());
+        }
+    }
+
+    public int size() {
+        ready.join();
+        synchronized (this) {
+            return total();
+        }
+    }
+
+    // Queues the score for the writer thread; the future completes once the batch holding it is fsynced.
+    public CompletableFuture<Void> submit(String name, int score) {
+        Pending p = new Pending(clean(name), score);
+        // close() enqueues CLOSE under the same monitor, so nothing can slip in behind it and never complete.
+        synchronized (pending) {
+            if (closed) {
+                p.committed.completeExceptionally(new IllegalStateException("leaderboard is closed"));
+                return p.committed;
+            }
+            lastCommit = p.committed;
+            pending.add(p);
+        }
+        return p.committed;
+    }
+
+    public void add(String name, int score) {
+        try {
+            submit(name, score).join();
+        } catch (CompletionException ignore) {}
+    }
+
+    public CompletableFuture<List<Entry>> topAsync(int n) {
+        return ready.thenApply(v -> top(n));
+    }
+
+    public List<Entry> top(int n) {
+        ready.join();
+        return topLocked(n);
+    }
+
+    private synchronized List<Entry> topLocked(int n) {
+        if (n <= TOP_CACHE_SIZE) return new ArrayList<>(topCache.subList(0, Math.min(n, topCache.size())));
+        return merged(0, n);
+    }
+
+    // 1-based rank of the player's best score, or -1 if the player has no entry.
+    public int rankOf(String name) {
+        ready.join();
+        synchronized (this) {
+            String key = clean(name);
+            Entry e = best.get(key);
+            if (e == null && base != null) {
+                int r = base.rankOf(key);
+                if (r >= 0) e = base.entry(r);
+            }
+            return e == null ? -1 : countBefore(e) + 1;
+        }
+    }
+
+    // Percentage of players whose best score is strictly below score.
+    public double percentile(int score) {
+        ready.join();
+        synchronized (this) {
+            int n = total();
+            if (n == 0) return 0;
+            int atOrAbove = score == Integer.MIN_VALUE ? n : countBefore(new Entry("", score - 1));
+            return 100.0 * (n - atOrAbove) / n;
+        }
+    }
+
+    // Entries ranked from..to, 1-based and inclusive.
+    public List<Entry> range(int from, int to) {
+        ready.join();
+        synchronized (this) {
+            return merged(from - 1, to);
+        }
+    }
+
+    // Folds the log into a fresh snapshot under the exclusive lock. The snapshot and its directory entry
+    // are on disk before the generation is bumped, and the generation before the log is truncated, so a
+    // crash at any point leaves the old snapshot with the full log, the new snapshot with a log it already
+    // holds (replaying it is a max-merge, so harmless), or the new snapshot with a generation change.
+    public void compact() {
+        if (!ready.isDone()) return;
+        synchronized (logLock) {
+            File tmp = new File(store.getPath() + ".tmp");
+            try {
+                FileLock lock = lockStore(false);
+                try {
+                    catchUp();
+                    if (logOffset == 0) return;
+                    List<Entry> snapshot;
+                    synchronized (this) {
+                        snapshot = merged(0, total());
+                    }
+                    if (binary) {
+                        LeaderboardFile.write(tmp, snapshot);
+                    } else {
+                        LeaderboardFile.writeText(tmp, snapshot);
+                    }
+                    try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE)) {
+                        ch.force(true);
+                    }
+                    Files.move(tmp.toPath(), store.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    forceDirectory();
+                    ByteBuffer gen = ByteBuffer.allocate(Long.BYTES).putLong(0, generation + 1);
+                    while (gen.hasRemaining()) lockChannel.write(gen, gen.position());
+                    lockChannel.force(false);
+                    logChannel.truncate(0);
+                    logChannel.force(false);
+                    generation++;
+                    logOffset = 0;
+                    if (binary) {
+                        synchronized (this) { loadSnapshot(); }
+                    }
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException ignore) {
+                tmp.delete();
+            }
+        }
+    }
+
+    // Makes the rename durable. Some platforms cannot open a directory; there the move is as durable as it gets.
+    private void forceDirectory() {
+        File dir = store.getAbsoluteFile().getParentFile();
+        if (dir == null) return;
+        try (FileChannel ch = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException ignore) {}
+    }
+
+    // Waits (bounded) for every submitted score to reach the disk; runs as a JVM shutdown hook.
+    public void flush() {
+        try {
+            lastCommit.get(SHUTDOWN_FLUSH_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ignore) {}
+    }
+
+    public void close() {
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException ignore) {}
+        synchronized (pending) {
+            if (closed) return;
+            closed = true;
+            pending.add(CLOSE);
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        maintenance.shutdown();
+        try {
+            maintenance.awaitTermination(SHUTDOWN_FLUSH_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compact();
+        synchronized (logLock) {
+            try {
+                if (logChannel != null) logChannel.close();
+                if (lockChannel != null) lockChannel.close();
+            } catch (IOException ignore) {}
+            logChannel = null;
+            lockChannel = null;
+        }
+    }
+}
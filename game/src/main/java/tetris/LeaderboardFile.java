@@ -0,0 +1,170 @@
+package tetris;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// Read-only, memory-mapped binary leaderboard snapshot.
+//
+//   header   int magic, int count, long recordsOffset, long namesOffset, long heapOffset
+//   records  count x (int score, int nameId), in ranking order
+//   names    count x (int heapPosition, int rank), sorted by name so nameId doubles as the search index
+//   heap     per name: unsigned short length, UTF-8 bytes
+//
+// Every section is fixed width except the heap, so top(n) reads n records and n names and
+// a lookup by name is a binary search over the name table.
+final class LeaderboardFile {
+    private static final int MAGIC = 0x544C4231;
+    private static final int HEADER = 32;
+
+    private final MappedByteBuffer buf;
+    private final int count;
+    private final int records;
+    private final int names;
+    private final int heap;
+
+    private LeaderboardFile(MappedByteBuffer buf) throws IOException {
+        if (buf.capacity() < HEADER || buf.getInt(0) != MAGIC) throw new IOException("not a binary leaderboard");
+        this.buf = buf;
+        this.count = buf.getInt(4);
+        this.records = (int) buf.getLong(8);
+        this.names = (int) buf.getLong(16);
+        this.heap = (int) buf.getLong(24);
+    }
+
+    static LeaderboardFile map(File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new LeaderboardFile(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    int size() { return count; }
+
+    int score(int rank) { return buf.getInt(records + rank * 8); }
+
+    String name(int rank) { return nameById(buf.getInt(records + rank * 8 + 4)); }
+
+    Leaderboard.Entry entry(int rank) { return new Leaderboard.Entry(name(rank), score(rank)); }
+
+    private String nameById(int id) {
+        int pos = heap + buf.getInt(names + id * 8);
+        byte[] bytes = new byte[buf.getShort(pos) & 0xFFFF];
+        buf.get(pos + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // 0-based rank of the player's entry, or -1.
+    int rankOf(String name) {
+        int lo = 0, hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = nameById(mid).compareTo(name);
+            if (cmp == 0) return buf.getInt(names + mid * 8 + 4);
+            if (cmp < 0) lo = mid + 1; else hi = mid - 1;
+        }
+        return -1;
+    }
+
+    // Number of entries ranked strictly before probe.
+    int countBefore(Leaderboard.Entry probe) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int s = score(mid);
+            boolean before = s != probe.score ? s > probe.score : name(mid).compareTo(probe.name) < 0;
+            if (before) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // Entries must be unique per name and sorted by Leaderboard.RANKING.
+    static void write(File file, List<Leaderboard.Entry> ranked) throws IOException {
+        int n = ranked.size();
+        Integer[] byName = new Integer[n];
+        for (int i = 0; i < n; i++) byName[i] = i;
+        Arrays.sort(byName, Comparator.comparing(i -> ranked.get(i).name));
+        int[] nameId = new int[n];
+        for (int id = 0; id < n; id++) nameId[byName[id]] = id;
+
+        ByteArrayOutputStream heapBytes = new ByteArrayOutputStream();
+        int[] heapPos = new int[n];
+        for (int id = 0; id < n; id++) {
+            byte[] utf8 = ranked.get(byName[id]).name.getBytes(StandardCharsets.UTF_8);
+            if (utf8.length > 0xFFFF) throw new IOException("player name too long");
+            heapPos[id] = heapBytes.size();
+            heapBytes.write(utf8.length >>> 8);
+            heapBytes.write(utf8.length);
+            heapBytes.write(utf8);
+        }
+
+        long recordsOffset = HEADER;
+        long namesOffset = recordsOffset + 8L * n;
+        long heapOffset = namesOffset + 8L * n;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(n);
+            out.writeLong(recordsOffset);
+            out.writeLong(namesOffset);
+            out.writeLong(heapOffset);
+            for (int rank = 0; rank < n; rank++) {
+                out.writeInt(ranked.get(rank).score);
+                out.writeInt(nameId[rank]);
+            }
+            for (int id = 0; id < n; id++) {
+                out.writeInt(heapPos[id]);
+                out.writeInt(byName[id]);
+            }
+            heapBytes.writeTo(out);
+        }
+    }
+
+    // Best score per player from a text store, in ranking order.
+    static List<Leaderboard.Entry> readText(File file) throws IOException {
+        Map<String, Integer> best = new HashMap<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                int comma = line.indexOf(',');
+                if (comma < 0) continue;
+                try {
+                    best.merge(line.substring(0, comma), Integer.parseInt(line.substring(comma + 1)), Math::max);
+                } catch (NumberFormatException ignore) {}
+            }
+        }
+        List<Leaderboard.Entry> list = new ArrayList<>(best.size());
+        for (Map.Entry<String, Integer> e : best.entrySet()) list.add(new Leaderboard.Entry(e.getKey(), e.getValue()));
+        list.sort(Leaderboard.RANKING);
+        return list;
+    }
+
+    static void writeText(File file, List<Leaderboard.Entry> ranked) throws IOException {
+        try (Writer fw = new BufferedWriter(new FileWriter(file, false))) {
+            for (Leaderboard.Entry e : ranked) {
+                fw.write(e.name + "," + e.score + System.lineSeparator());
+            }
+        }
+    }
+
+    // Usage: java -cp game/target/classes tetris.LeaderboardFile (to-binary|to-text) <in> <out>
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("usage: LeaderboardFile (to-binary|to-text) <in> <out>");
+            System.exit(2);
+        }
+        File in = new File(args[1]), out = new File(args[2]);
+        if (args[0].equals("to-binary")) {
+            write(out, readText(in));
+        } else if (args[0].equals("to-text")) {
+            LeaderboardFile f = map(in);
+            List<Leaderboard.Entry> list = new ArrayList<>(f.size());
+            for (int i = 0; i < f.size(); i++) list.add(f.entry(i));
+            writeText(out, list);
+        } else {
+            System.err.println("unknown mode: " + args[0]);
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package tetris;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Multi-process stress check for the shared leaderboard store: N child JVMs submit scores concurrently
+// (with aggressive compaction) and the parent verifies that every single score survived.
+// Usage: java -cp game/target/classes tetris.LeaderboardStress [processes] [scoresPerProcess] [txt|bin]
+public class LeaderboardStress {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--child")) {
+            child(args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            return;
+        }
+        int processes = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int perProcess = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        String format = args.length > 2 ? args[2] : "txt";
+        if (run(processes, perProcess, format) > 0) {
+            System.err.println("FAIL");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    // Runs one stress round and returns the number of lost scores plus failed children; zero means it passed.
+    static int run(int processes, int perProcess, String format) throws IOException, InterruptedException {
+        File dir = Files.createTempDirectory("leaderboard-stress").toFile();
+        String store = new File(dir, "tetris-leaderboard." + format).getPath();
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        // Where this class was loaded from rather than java.class.path, which a test runner may have replaced
+        // with a launcher jar.
+        String classpath;
+        try {
+            classpath = new File(LeaderboardStress.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+        } catch (java.net.URISyntaxException e) {
+            throw new IOException(e);
+        }
+
+        long start = System.nanoTime();
+        List<Process> children = new ArrayList<>();
+        for (int id = 0; id < processes; id++) {
+            children.add(new ProcessBuilder(java, "-cp", classpath, LeaderboardStress.class.getName(),
+                    "--child", store, String.valueOf(id), String.valueOf(perProcess)).inheritIO().start());
+        }
+        int failed = 0;
+        for (Process p : children) if (p.waitFor() != 0) failed++;
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Leaderboard check = new Leaderboard(store);
+        Map<String, Integer> found = new HashMap<>();
+        for (Leaderboard.Entry e : check.load()) found.put(e.name, e.score);
+        check.close();
+
+        int missing = 0;
+        for (int id = 0; id < processes; id++) {
+            for (int i = 0; i < perProcess; i++) {
+                Integer score = found.get(name(id, i));
+                if (score == null || score != score(id, i)) missing++;
+            }
+        }
+        int total = processes * perProcess;
+        System.out.println(String.format(Locale.ROOT, "processes=%d scores=%d elapsed=%.2fs commits/s=%.0f missing=%d failedChildren=%d",
+                processes, total, seconds, total / seconds, missing, failed));
+        deleteAll(dir);
+        return missing + failed;
+    }
+
+    private static void child(String store, int id, int count) throws IOException {
+        Leaderboard lb = new Leaderboard(store, 25);
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Mix fire-and-forget submits with blocking adds so batches of every size hit the lock.
+            if (i % 50 == 0) lb.add(name(id, i), score(id, i));
+            else futures.add(lb.submit(name(id, i), score(id, i)));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format(Locale.ROOT, "child %d: scores=%d batches=%d commits/s=%.0f",
+                id, lb.getCommittedScores(), lb.getCommitBatches(), lb.getCommittedScores() / seconds));
+        lb.close();
+    }
+
+    private static String name(int id, int i) { return "p" + id + "-" + i; }
+    private static int score(int id, int i) { return id * 1_000_000 + i; }
+
+    private static void deleteAll(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+}
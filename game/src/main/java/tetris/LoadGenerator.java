@@ -0,0 +1,228 @@
+package tetris;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+// Load generator for GameServer: drives many bot sessions from one thread over a NIO selector, so the client
+// side never needs a thread per session. Each bot has one input in flight: it sends, waits for the ack, then
+// sends the next input a fixed interval later. Ack latency is the time from sending to reading the whole ack.
+// Without a host:port argument an in-process server is started on a free port, and its tick lag is reported too.
+public final class LoadGenerator {
+    // Connections started per loop, so the server's accept backlog is not flooded all at once.
+    private static final int CONNECT_BATCH = 256;
+
+    private static final class Bot {
+        final SocketChannel channel;
+        final ByteBuffer out = ByteBuffer.allocate(GameServer.INPUT_BYTES);
+        final ByteBuffer in = ByteBuffer.allocate(GameServer.ACK_BYTES);
+        SelectionKey key;
+        long random;
+        int seq;
+        long sentAt, dueAt;
+        boolean over, acked;
+
+        Bot(SocketChannel channel, long seed) {
+            this.channel = channel;
+            this.random = seed | 1;
+        }
+
+        // Mostly moves and rotations, with a hard drop one time in six; RESTART once the game is over.
+        int nextOp() {
+            if (over) return GameServer.RESTART;
+            random ^= random << 13;
+            random ^= random >>> 7;
+            random ^= random << 17;
+            switch ((int) ((random >>> 1) % 6)) {
+                case 0: return GameServer.LEFT;
+                case 1: return GameServer.RIGHT;
+                case 2: return GameServer.ROTATE_LEFT;
+                case 3: return GameServer.ROTATE_RIGHT;
+                case 4: return GameServer.SOFT_DROP;
+                default: return GameServer.HARD_DROP;
+            }
+        }
+    }
+
+    private final InetSocketAddress address;
+    private final int target;
+    private final long intervalNanos;
+    private final Selector selector;
+    // Bots waiting to send, in due order: every bot waits the same interval after its ack.
+    private final ArrayDeque<Bot> waiting = new ArrayDeque<>();
+    private final Metrics.Histogram latency = new Metrics.Histogram("Ack", "Millis", 1e6);
+    private final Metrics.Histogram steadyLatency = new Metrics.Histogram("Ack", "Millis", 1e6);
+    private int opened, connected, failed;
+    private long acks;
+    // Set at the first report after every session has connected, which leaves out the ramp-up.
+    private boolean steady;
+
+    LoadGenerator(InetSocketAddress address, int sessions, long intervalMillis) throws IOException {
+        this.address = address;
+        this.target = sessions;
+        this.intervalNanos = intervalMillis * 1_000_000L;
+        this.selector = Selector.open();
+    }
+
+    // Runs for the given time and returns the number of sessions that were still acked in the final second.
+    int run(long seconds, GameServer server) throws IOException {
+        long start = System.nanoTime(), end = start + seconds * 1_000_000_000L;
+        long lastReport = start, reportAcks = 0;
+        int sustained = 0;
+        while (true) {
+            long now = System.nanoTime();
+            for (int i = 0; i < CONNECT_BATCH && opened < target; i++) connect();
+            while (!waiting.isEmpty() && waiting.peekFirst().dueAt - now <= 0) send(waiting.pollFirst(), now);
+            long wait = waiting.isEmpty() ? 10_000_000L : Math.max(0, waiting.peekFirst().dueAt - now);
+            if (wait < 1_000_000L) selector.selectNow(); else selector.select(wait / 1_000_000L);
+            for (SelectionKey key : selector.selectedKeys()) ready(key);
+            selector.selectedKeys().clear();
+
+            now = System.nanoTime();
+            if (now - lastReport >= 1_000_000_000L) {
+                double elapsed = (now - lastReport) / 1e9;
+                latency.roll(elapsed);
+                sustained = countAcked();
+                String line = String.format(Locale.ROOT, "t=%3.0fs connected=%d sustained=%d acks/s=%.0f ack p50=%.2f p99=%.2f max=%.2f ms",
+                        (now - start) / 1e9, connected, sustained, (acks - reportAcks) / elapsed,
+                        latency.p50(), latency.p99(), latency.max());
+                if (server != null) {
+                    String status = server.status(elapsed);
+                    line += "  server " + status.substring(status.indexOf("ticks/s"));
+                }
+                System.out.println(line);
+                reportAcks = acks;
+                lastReport = now;
+                steady = connected + failed >= target;
+                if (now - end >= 0) break;
+            }
+        }
+        steadyLatency.roll(Math.max(1e-9, (lastReport - start) / 1e9));
+        System.out.println(String.format(Locale.ROOT,
+                "sessions=%d sustained=%d failed=%d acks=%d ack (steady state) p50=%.2f p99=%.2f max=%.2f ms",
+                target, sustained, failed, acks, steadyLatency.p50(), steadyLatency.p99(), steadyLatency.max()));
+        return sustained;
+    }
+
+    private void connect() {
+        opened++;
+        try {
+            SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Bot bot = new Bot(channel, opened);
+            if (channel.connect(address)) {
+                connected(bot, channel.register(selector, SelectionKey.OP_READ, bot));
+            } else {
+                channel.register(selector, SelectionKey.OP_CONNECT, bot);
+            }
+        } catch (IOException e) {
+            failed++;
+        }
+    }
+
+    private void connected(Bot bot, SelectionKey key) {
+        bot.key = key;
+        connected++;
+        bot.dueAt = System.nanoTime();
+        waiting.addLast(bot);
+    }
+
+    private void ready(SelectionKey key) {
+        Bot bot = (Bot) key.attachment();
+        try {
+            if (key.isConnectable()) {
+                bot.channel.finishConnect();
+                key.interestOps(SelectionKey.OP_READ);
+                connected(bot, key);
+                return;
+            }
+            if (key.isWritable()) {
+                bot.channel.write(bot.out);
+                if (!bot.out.hasRemaining()) key.interestOps(SelectionKey.OP_READ);
+            }
+            if (key.isReadable()) {
+                if (bot.channel.read(bot.in) < 0) throw new IOException("closed by server");
+                if (!bot.in.hasRemaining()) acked(bot);
+            }
+        } catch (IOException e) {
+            if (bot.key != null) connected--;
+            failed++;
+            key.cancel();
+            try {
+                bot.channel.close();
+            } catch (IOException ignore) {}
+        }
+    }
+
+    private void send(Bot bot, long now) {
+        if (!bot.key.isValid()) return;
+        bot.out.clear();
+        bot.out.put((byte) bot.nextOp()).putInt(++bot.seq).flip();
+        bot.sentAt = now;
+        try {
+            bot.channel.write(bot.out);
+        } catch (IOException e) {
+            bot.key.cancel();
+            connected--;
+            failed++;
+            try {
+                bot.channel.close();
+            } catch (IOException ignore) {}
+            return;
+        }
+        if (bot.out.hasRemaining()) bot.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private void acked(Bot bot) throws IOException {
+        long now = System.nanoTime();
+        bot.in.flip();
+        if (bot.in.getInt() != bot.seq) throw new IOException("ack out of order");
+        bot.in.position(GameServer.ACK_BYTES - 1);
+        bot.over = bot.in.get() == GameServer.OVER;
+        bot.in.clear();
+        bot.acked = true;
+        acks++;
+        latency.record(now - bot.sentAt);
+        if (steady) steadyLatency.record(now - bot.sentAt);
+        bot.dueAt = now + intervalNanos;
+        waiting.addLast(bot);
+    }
+
+    // Bots acked since the last call.
+    private int countAcked() {
+        int n = 0;
+        for (SelectionKey key : selector.keys()) {
+            Bot bot = (Bot) key.attachment();
+            if (bot.acked) n++;
+            bot.acked = false;
+        }
+        return n;
+    }
+
+    // Usage: java -cp game/target/classes tetris.LoadGenerator [sessions] [seconds] [intervalMillis] [host:port]
+    // 10,000 sessions in one process need about 20,000 file descriptors (ulimit -n).
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 30;
+        long intervalMillis = args.length > 2 ? Long.parseLong(args[2]) : 100;
+        GameServer server = null;
+        InetSocketAddress address;
+        if (args.length > 3) {
+            String[] hostPort = args[3].split(":");
+            address = new InetSocketAddress(hostPort[0], Integer.parseInt(hostPort[1]));
+        } else {
+            server = new GameServer(0, 400);
+            server.start();
+            address = new InetSocketAddress("localhost", server.getPort());
+        }
+        new LoadGenerator(address, sessions, intervalMillis).run(seconds, server);
+        if (server != null) server.close();
+    }
+}
@@ -0,0 +1,328 @@
+package tetris;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import javax.management.RuntimeOperationsException;
+
+// Process-wide metrics, off unless -Dtetris.metrics=true or -Dtetris.metrics.csv=<file> is given. Call sites
+// test ENABLED first; it is a static final, so the JIT drops disabled instrumentation entirely. When enabled,
+// each group is a JMX MBean named tetris:type=<group>, and once a second every metric rolls over to a new
+// interval, which is also appended to the CSV file when one is set.
+// Run e.g.: java -Dtetris.metrics.csv=metrics.csv -cp game/target/classes tetris.Simulation
+public final class Metrics {
+    public static final boolean ENABLED =
+            Boolean.getBoolean("tetris.metrics") || System.getProperty("tetris.metrics.csv") != null;
+
+    private static final Map<String, Group> GROUPS = new LinkedHashMap<>();
+
+    static final Histogram TICK = histogram("Engine", "Tick", "Micros", 1e3);
+    static final Histogram TICK_ALLOCATION = histogram("Engine", "TickAllocation", "Bytes", 1);
+    static final Meter TRY_MOVE = meter("Engine", "TryMove");
+    static final Histogram LINE_CLEAR = histogram("Engine", "LineClear", "Micros", 1e3);
+    static final Histogram FRAME = histogram("Render", "Frame", "Micros", 1e3);
+    static final Meter FRAMES_DROPPED = meter("Render", "FramesDropped");
+    static final Histogram LEADERBOARD_LOAD = histogram("Leaderboard", "Load", "Micros", 1e3);
+    static final Histogram LEADERBOARD_ADD = histogram("Leaderboard", "Add", "Micros", 1e3);
+    static final Gauge LEADERBOARD_FILE_BYTES = gauge("Leaderboard", "FileBytes");
+
+    static {
+        if (ENABLED) start();
+    }
+
+    private Metrics() {}
+
+    // Bytes the current thread has allocated so far.
+    static long allocatedBytes() {
+        return Threads.BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // Initialized on first use, so a run with metrics off never touches the management beans.
+    private static final class Threads {
+        static final com.sun.management.ThreadMXBean BEAN = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+    private static Histogram histogram(String group, String name, String unit, double scale) {
+        return group(group).add(new Histogram(name, unit, scale));
+    }
+
+    private static Meter meter(String group, String name) { return group(group).add(new Meter(name)); }
+    private static Gauge gauge(String group, String name) { return group(group).add(new Gauge(name)); }
+
+    private static Group group(String name) { return GROUPS.computeIfAbsent(name, Group::new); }
+
+    private static void start() {
+        try {
+            for (Group g : GROUPS.values()) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(g, new ObjectName("tetris:type=" + g.name));
+            }
+        } catch (JMException e) {
+            System.err.println("metrics: JMX registration failed: " + e);
+        }
+        PrintWriter csv = null;
+        String path = System.getProperty("tetris.metrics.csv");
+        if (path != null) {
+            try {
+                csv = new PrintWriter(Files.newBufferedWriter(Paths.get(path)));
+                StringBuilder header = new StringBuilder("timeMillis");
+                for (Group g : GROUPS.values()) {
+                    for (String a : g.attributes) header.append(',').append(g.name).append('.').append(a);
+                }
+                csv.println(header);
+            } catch (IOException e) {
+                System.err.println("metrics: cannot write " + path + ": " + e);
+            }
+        }
+        Roller roller = new Roller(csv);
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "tetris-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(roller::roll, 1, 1, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(roller::roll, "tetris-metrics-flush"));
+    }
+
+    // Closes each interval: every metric rolls, then the interval is written as one CSV row.
+    private static final class Roller {
+        private final PrintWriter csv;
+        private long last = System.nanoTime();
+
+        Roller(PrintWriter csv) { this.csv = csv; }
+
+        synchronized void roll() {
+            long now = System.nanoTime();
+            double seconds = Math.max(1e-9, (now - last) / 1e9);
+            last = now;
+            for (Group g : GROUPS.values()) {
+                for (Metric m : g.metrics) m.roll(seconds);
+            }
+            if (csv == null) return;
+            StringBuilder row = new StringBuilder().append(System.currentTimeMillis());
+            for (Group g : GROUPS.values()) {
+                for (int i = 0; i < g.attributes.size(); i++) row.append(',').append(g.value(i));
+            }
+            csv.println(row);
+            csv.flush();
+        }
+    }
+
+    abstract static class Metric {
+        final String name;
+
+        Metric(String name) { this.name = name; }
+
+        abstract void roll(double seconds);
+        abstract String[] attributes();
+        abstract Object value(int attribute);
+    }
+
+    // Log-linear buckets in the style of HdrHistogram: values below 32 are exact, above that each power of two
+    // is split into 16 buckets, so any value lands in a bucket within about 6% of it and memory is fixed at
+    // 960 counters, enough for every long. Recording is lock-free; roll() moves the live counts into the
+    // interval that is reported.
+    static final class Histogram extends Metric {
+        private static final int SUB_BITS = 4;
+        private static final int BUCKETS = bucket(Long.MAX_VALUE) + 1;
+
+        private final String unit;
+        private final double scale;
+        private final AtomicLongArray live = new AtomicLongArray(BUCKETS);
+        private final AtomicLong liveMax = new AtomicLong();
+        private final LongAdder liveSum = new LongAdder();
+        private final long[] interval = new long[BUCKETS];
+        private volatile long reportedCount;
+        private volatile double[] reported = new double[5];
+
+        Histogram(String name, String unit, double scale) {
+            super(name);
+            this.unit = unit;
+            this.scale = scale;
+        }
+
+        void record(long value) {
+            if (value < 0) value = 0;
+            live.incrementAndGet(bucket(value));
+            liveSum.add(value);
+            long max;
+            while (value > (max = liveMax.get()) && !liveMax.compareAndSet(max, value)) {}
+        }
+
+        static int bucket(long value) {
+            if (value < 2L << SUB_BITS) return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            return ((exponent - SUB_BITS) << SUB_BITS) + (int) (value >>> (exponent - SUB_BITS));
+        }
+
+        // Largest value that falls in bucket i.
+        static long highest(int i) {
+            if (i + 1 < 2 << SUB_BITS) return i;
+            int next = i + 1;
+            int exponent = (next >> SUB_BITS) + SUB_BITS - 1;
+            long mantissa = (next & ((1 << SUB_BITS) - 1)) + (1L << SUB_BITS);
+            return (mantissa << (exponent - SUB_BITS)) - 1;
+        }
+
+        void roll(double seconds) {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) count += interval[i] = live.getAndSet(i, 0);
+            long sum = liveSum.sumThenReset();
+            long max = liveMax.getAndSet(0);
+            reported = new double[] {
+                count == 0 ? 0 : sum / scale / count,
+                percentile(count, 0.50, max),
+                percentile(count, 0.99, max),
+                percentile(count, 0.999, max),
+                max / scale
+            };
+            reportedCount = count;
+        }
+
+        // The bucket bound can overshoot the largest value actually recorded.
+        private double percentile(long count, double fraction, long max) {
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(fraction * count), seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += interval[i];
+                if (seen >= rank) return Math.min(highest(i), max) / scale;
+            }
+            return max / scale;
+        }
+
+        String[] attributes() {
+            return new String[] {name + "Count", name + "Mean" + unit, name + "P50" + unit, name + "P99" + unit,
+                    name + "P999" + unit, name + "Max" + unit};
+        }
+
+        // The last interval closed by roll(), in the histogram's unit.
+        long count() { return reportedCount; }
+        double mean() { return reported[0]; }
+        double p50() { return reported[1]; }
+        double p99() { return reported[2]; }
+        double max() { return reported[4]; }
+
+        Object value(int attribute) { return attribute == 0 ? (Object) reportedCount : (Object) reported[attribute - 1]; }
+    }
+
+    // Event counter with its rate over the last interval.
+    static final class Meter extends Metric {
+        private final LongAdder live = new LongAdder();
+        private volatile long total;
+        private volatile double perSecond;
+
+        Meter(String name) { super(name); }
+
+        void mark() { live.increment(); }
+        void mark(long n) { live.add(n); }
+
+        void roll(double seconds) {
+            long n = live.sumThenReset();
+            total += n;
+            perSecond = n / seconds;
+        }
+
+        String[] attributes() { return new String[] {name + "Total", name + "PerSecond"}; }
+        Object value(int attribute) { return attribute == 0 ? (Object) total : (Object) perSecond; }
+    }
+
+    // A value read when reported, from whichever source was set last.
+    static final class Gauge extends Metric {
+        private volatile LongSupplier source = () -> 0;
+        private volatile long value;
+
+        Gauge(String name) { super(name); }
+
+        void set(LongSupplier source) { this.source = source; }
+
+        void roll(double seconds) { value = source.getAsLong(); }
+        String[] attributes() { return new String[] {name}; }
+        Object value(int attribute) { return value; }
+    }
+
+    static final class Group implements DynamicMBean {
+        final String name;
+        final List<Metric> metrics = new ArrayList<>();
+        final List<String> attributes = new ArrayList<>();
+        private final List<Metric> owners = new ArrayList<>();
+        private final List<Integer> indexes = new ArrayList<>();
+
+        Group(String name) { this.name = name; }
+
+        <M extends Metric> M add(M metric) {
+            metrics.add(metric);
+            String[] names = metric.attributes();
+            for (int i = 0; i < names.length; i++) {
+                attributes.add(names[i]);
+                owners.add(metric);
+                indexes.add(i);
+            }
+            return metric;
+        }
+
+        Object value(int i) { return owners.get(i).value(indexes.get(i)); }
+
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            int i = attributes.indexOf(attribute);
+            if (i < 0) throw new AttributeNotFoundException(attribute);
+            return value(i);
+        }
+
+        public AttributeList getAttributes(String[] names) {
+            AttributeList list = new AttributeList();
+            for (String n : names) {
+                int i = attributes.indexOf(n);
+                if (i >= 0) list.add(new Attribute(n, value(i)));
+            }
+            return list;
+        }
+
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        // Read-only like setAttribute; the signature allows no checked exception, so the names go in a runtime one.
+        public AttributeList setAttributes(AttributeList attributes) {
+            if (attributes.isEmpty()) return new AttributeList();
+            List<String> names = new ArrayList<>();
+            for (Attribute a : attributes.asList()) names.add(a.getName());
+            throw new RuntimeOperationsException(new IllegalArgumentException(String.join(", ", names)
+                    + (names.size() == 1 ? " is" : " are") + " read-only"));
+        }
+
+        public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(action));
+        }
+
+        public MBeanInfo getMBeanInfo() {
+            MBeanAttributeInfo[] info = new MBeanAttributeInfo[attributes.size()];
+            for (int i = 0; i < info.length; i++) {
+                String type = value(i).getClass().getName();
+                info[i] = new MBeanAttributeInfo(attributes.get(i), type, attributes.get(i) + " over the last interval", true, false, false);
+            }
+            return new MBeanInfo(Metrics.class.getName(), name + " metrics", info, null, null, null);
+        }
+    }
+}
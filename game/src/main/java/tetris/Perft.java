@@ -0,0 +1,281 @@
+package tetris;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+import tetris.TetrisBoard.Tetrominoes;
+
+// Perft for the engine, after the chess-engine tool: counts the leaves of the placement tree to a given depth.
+// The children of a position are the distinct locked positions its current piece reaches through moveLeft,
+// moveRight, rotateLeft, rotateRight and softDrop and then locks with dropDown, so every reachable piece state
+// goes through the real movement rules and tryMove. A changed count means a changed rule; nodes per second
+// tracks the speed of the moves. The first ply is split over a work-stealing pool.
+public final class Perft {
+    private static final int PAD = 4;
+    private static final int MOVES = 5;
+
+    // Reusable scratch for one thread's searches: visited piece states, the search queue and the locks found.
+    static final class Searcher {
+        private int[] visited = new int[0], queue = new int[0], seenStamps = new int[0];
+        private long[] seen = new long[0];
+        private int stamp;
+
+        // Adds the children of board to out, or only counts them when out is null.
+        int expand(TetrisBoard board, List<TetrisBoard> out) {
+            Tetromino spawn = board.getCurrentPiece();
+            if (!board.isStarted() || spawn == null || spawn.getType() == Tetrominoes.NoShape) return 0;
+            Tetrominoes type = spawn.getType();
+            int width = board.getCols() + 2 * PAD, height = board.getRows() + 2 * PAD;
+            prepare(4 * width * height);
+            TetrisBoard work = board.copy();
+            int head = 0, tail = 0, children = 0;
+            queue[tail++] = visit(spawn.rotation(), work.getCurX(), work.getCurY(), width, height);
+            while (head < tail) {
+                int state = queue[head++];
+                int rotation = state / (width * height), x = state / height % width - PAD, y = state % height - PAD;
+                Tetromino piece = TetrominoFactory.get(type, rotation);
+                for (int move = 0; move < MOVES; move++) {
+                    work.tryMove(piece, x, y);
+                    switch (move) {
+                        case 0: work.moveLeft(); break;
+                        case 1: work.moveRight(); break;
+                        case 2: work.rotateLeft(); break;
+                        case 3: work.rotateRight(); break;
+                        // On the ground softDrop would lock, which is the dropDown below.
+                        default: if (work.ghostY() < y) work.softDrop(); break;
+                    }
+                    int next = visit(work.getCurrentPiece().rotation(), work.getCurX(), work.getCurY(), width, height);
+                    if (next >= 0) queue[tail++] = next;
+                }
+                work.tryMove(piece, x, y);
+                if (work.ghostY() != y || !firstLock(work, piece, x, y)) continue;
+                children++;
+                if (out != null) {
+                    TetrisBoard child = board.copy();
+                    child.tryMove(piece, x, y);
+                    child.dropDown();
+                    if (child.isStarted() && child.getCurrentPiece().getType() == Tetrominoes.NoShape) child.tick();
+                    out.add(child);
+                }
+            }
+            return children;
+        }
+
+        private void prepare(int states) {
+            if (visited.length < states) {
+                visited = new int[states];
+                queue = new int[states];
+                int capacity = Integer.highestOneBit(states) << 1;
+                seen = new long[capacity];
+                seenStamps = new int[capacity];
+                stamp = 0;
+            }
+            if (++stamp == 0) {
+                Arrays.fill(visited, 0);
+                Arrays.fill(seenStamps, 0);
+                stamp = 1;
+            }
+        }
+
+        // The state's index the first time it is seen, otherwise -1.
+        private int visit(int rotation, int x, int y, int width, int height) {
+            int state = (rotation * width + x + PAD) * height + y + PAD;
+            if (visited[state] == stamp) return -1;
+            visited[state] = stamp;
+            return state;
+        }
+
+        // Symmetric pieces reach the same cells from more than one rotation, so locks are told apart by the cells
+        // they fill rather than by piece state.
+        private boolean firstLock(TetrisBoard board, Tetromino piece, int x, int y) {
+            long key = 0;
+            for (int i = 0; i < 4; i++) key += board.cellKey(x + piece.x(i), y - piece.y(i));
+            int mask = seen.length - 1;
+            for (int i = (int) (key ^ key >>> 32) & mask; ; i = (i + 1) & mask) {
+                if (seenStamps[i] != stamp) {
+                    seenStamps[i] = stamp;
+                    seen[i] = key;
+                    return true;
+                }
+                if (seen[i] == key) return false;
+            }
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Searcher> searchers = ThreadLocal.withInitial(Searcher::new);
+
+    // A null pool counts on the calling thread.
+    public Perft(ForkJoinPool pool) { this.pool = pool; }
+
+    public long count(TetrisBoard board, int depth) {
+        if (depth <= 0) return 1;
+        if (depth == 1 || pool == null) return countSerial(board, depth);
+        List<TetrisBoard> children = new ArrayList<>();
+        searchers.get().expand(board, children);
+        return pool.submit(() -> children.parallelStream().mapToLong(c -> countSerial(c, depth - 1)).sum()).join();
+    }
+
+    private long countSerial(TetrisBoard board, int depth) {
+        Searcher searcher = searchers.get();
+        // The last ply is only counted, never built, as chess perft counts leaf moves without making them.
+        if (depth == 1) return searcher.expand(board, null);
+        List<TetrisBoard> children = new ArrayList<>();
+        searcher.expand(board, children);
+        long nodes = 0;
+        for (TetrisBoard c : children) nodes += countSerial(c, depth - 1);
+        return nodes;
+    }
+
+    // A reference position: a stack given top row first, a piece sequence, and perft(1..n) as the engine
+    // should count them.
+    private static final class Position {
+        final String name, size, pieces;
+        final String[] stack;
+        final long[] expected;
+
+        Position(String name, String size, String pieces, String[] stack, long... expected) {
+            this.name = name;
+            this.size = size;
+            this.pieces = pieces;
+            this.stack = stack;
+            this.expected = expected;
+        }
+
+        TetrisBoard board() { return Perft.board(size, pieces, stack); }
+    }
+
+    private static final String[] EMPTY = {};
+
+    // Single pieces on an empty board can reach every hard-drop placement, which gives the counts for these
+    // independently of the engine: 7 + 10 for I, 9 for O, 8 + 9 for S and Z, and 8 + 9 + 8 + 9 for T, J and L.
+    // The rest were checked against a separate model of the same movement rules.
+    private static final Position[] REFERENCE = {
+        new Position("empty-I", "10x20", "I", EMPTY, 17),
+        new Position("empty-O", "10x20", "O", EMPTY, 9),
+        new Position("empty-S", "10x20", "S", EMPTY, 17),
+        new Position("empty-Z", "10x20", "Z", EMPTY, 17),
+        new Position("empty-T", "10x20", "T", EMPTY, 34),
+        new Position("empty-J", "10x20", "J", EMPTY, 34),
+        new Position("empty-L", "10x20", "L", EMPTY, 34),
+        new Position("empty", "10x20", "TIOLJSZ", EMPTY, 34, 596, 5542),
+        // Floating cells and a covered gap, so some locks need a soft drop and a slide underneath.
+        new Position("overhang", "10x20", "TIJ", new String[] {
+            "...####...",
+            "..........",
+            "#.....#...",
+            "##.####.##",
+            "#########.",
+        }, 45, 1028, 41101),
+        // A vertical I in the well clears all four rows.
+        new Position("well", "10x20", "ITL", new String[] {
+            "#########.",
+            "#########.",
+            "#########.",
+            "#########.",
+        }, 17, 578, 20314),
+        // Narrow enough that games end within a few pieces, which prunes the deeper plies.
+        new Position("small", "4x8", "IOTSZJL", EMPTY, 5, 15, 130, 454, 847, 2365),
+    };
+
+    static TetrisBoard board(String size, String pieces, String[] stack) {
+        String[] dims = size.split("x");
+        TetrisBoard board = new TetrisBoard(Integer.parseInt(dims[0]), Integer.parseInt(dims[1]), PieceGenerator.sequence(pieces(pieces)));
+        board.start();
+        for (int i = 0; i < stack.length; i++) {
+            int y = stack.length - 1 - i;
+            for (int x = 0; x < stack[i].length(); x++) {
+                if (stack[i].charAt(x) != '.') board.setCell(x, y, Tetrominoes.TShape);
+            }
+        }
+        return board;
+    }
+
+    // Guideline letters: I, O, T, S, Z, J and L.
+    static Tetrominoes[] pieces(String letters) {
+        Tetrominoes[] out = new Tetrominoes[letters.length()];
+        for (int i = 0; i < out.length; i++) {
+            switch (Character.toUpperCase(letters.charAt(i))) {
+                case 'I': out[i] = Tetrominoes.LineShape; break;
+                case 'O': out[i] = Tetrominoes.SquareShape; break;
+                case 'T': out[i] = Tetrominoes.TShape; break;
+                case 'S': out[i] = Tetrominoes.SShape; break;
+                case 'Z': out[i] = Tetrominoes.ZShape; break;
+                case 'J': out[i] = Tetrominoes.MirroredLShape; break;
+                case 'L': out[i] = Tetrominoes.LShape; break;
+                default: throw new IllegalArgumentException("unknown piece letter: " + letters.charAt(i));
+            }
+        }
+        return out;
+    }
+
+    // Counts every reference position to its recorded depth, printing each result, and returns the number
+    // of counts that differ.
+    int verify() {
+        int failures = 0;
+        long nodes = 0, start = System.nanoTime();
+        for (Position p : REFERENCE) {
+            for (int d = 1; d <= p.expected.length; d++) {
+                long n = count(p.board(), d);
+                nodes += n;
+                boolean ok = n == p.expected[d - 1];
+                if (!ok) failures++;
+                System.out.println(String.format(Locale.ROOT, "%-4s %s depth=%d nodes=%d%s", ok ? "ok" : "FAIL",
+                        p.name, d, n, ok ? "" : " expected=" + p.expected[d - 1]));
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format(Locale.ROOT, "positions=%d nodes=%d elapsed=%.3fs nodes/s=%.0f",
+                REFERENCE.length, nodes, seconds, nodes / seconds));
+        return failures;
+    }
+
+    private static Position reference(String name) {
+        for (Position p : REFERENCE) {
+            if (p.name.equals(name)) return p;
+        }
+        throw new IllegalArgumentException("unknown position: " + name);
+    }
+
+    // Usage: java -cp game/target/classes tetris.Perft [depth] [--pieces=TIOLJSZ] [--size=10x20] [--position=name]
+    //        [--threads=n]
+    //        java -cp game/target/classes tetris.Perft --verify
+    // Prints perft(1..depth) with nodes per second. --verify checks every reference position and exits non-zero
+    // on a mismatch.
+    public static void main(String[] args) {
+        String pieces = "TIOLJSZ", size = "10x20", position = null;
+        int depth = 3, threads = Runtime.getRuntime().availableProcessors();
+        boolean verify = false;
+        for (String a : args) {
+            if (a.startsWith("--pieces=")) pieces = a.substring(9);
+            else if (a.startsWith("--size=")) size = a.substring(7);
+            else if (a.startsWith("--position=")) position = a.substring(11);
+            else if (a.startsWith("--threads=")) threads = Integer.parseInt(a.substring(10));
+            else if (a.equals("--verify")) verify = true;
+            else depth = Integer.parseInt(a);
+        }
+        Perft perft = new Perft(new ForkJoinPool(threads));
+
+        if (verify) {
+            int failures = perft.verify();
+            if (failures > 0) {
+                System.err.println("FAIL: " + failures + " perft counts differ from the reference");
+                System.exit(1);
+            }
+            System.out.println("OK");
+            return;
+        }
+
+        TetrisBoard board = position != null ? reference(position).board() : board(size, pieces, EMPTY);
+        for (int d = 1; d <= depth; d++) {
+            long start = System.nanoTime();
+            long nodes = perft.count(board, d);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format(Locale.ROOT, "depth=%d nodes=%d elapsed=%.3fs nodes/s=%.0f",
+                    d, nodes, seconds, nodes / seconds));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package tetris;
+
+import tetris.TetrisBoard.Tetrominoes;
+
+// Source of the piece sequence for one board. Implementations keep all of their state in plain fields
+// so a board copy can carry an exact, independent copy of the generator.
+public interface PieceGenerator {
+    Tetrominoes next();
+
+    PieceGenerator copy();
+
+    // Each piece drawn independently with probability 1/7.
+    static PieceGenerator uniform(long seed) { return new UniformGenerator(seed); }
+
+    // Deals all seven pieces from a shuffled bag before refilling, so no piece is ever more than 12 apart.
+    static PieceGenerator sevenBag(long seed) { return new SevenBagGenerator(seed); }
+
+    // Deals the given pieces in order, over and over, for tools and fixtures that need a known sequence.
+    static PieceGenerator sequence(Tetrominoes... pieces) {
+        if (pieces.length == 0) throw new IllegalArgumentException("empty piece sequence");
+        return new SequenceGenerator(pieces.clone(), 0);
+    }
+
+    static PieceGenerator of(String mode, long seed) {
+        switch (mode) {
+            case "uniform": return uniform(seed);
+            case "bag": return sevenBag(seed);
+            default: throw new IllegalArgumentException("unknown piece generator: " + mode);
+        }
+    }
+}
+
+// The generator behind SplittableRandom, as a bare step function so the state can live in a copyable long.
+final class SplitMix64 {
+    static final Tetrominoes[] PIECES = {
+        Tetrominoes.ZShape, Tetrominoes.SShape, Tetrominoes.LineShape, Tetrominoes.TShape,
+        Tetrominoes.SquareShape, Tetrominoes.LShape, Tetrominoes.MirroredLShape
+    };
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private SplitMix64() {}
+
+    static long next(long state) { return state + GOLDEN_GAMMA; }
+
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Maps the high 32 bits of a mixed state onto [0, bound) by multiply-shift.
+    static int bounded(long state, int bound) {
+        return (int) (((mix(state) >>> 32) * bound) >>> 32);
+    }
+}
+
+final class UniformGenerator implements PieceGenerator {
+    private long state;
+
+    UniformGenerator(long seed) { this.state = seed; }
+
+    @Override
+    public Tetrominoes next() {
+        state = SplitMix64.next(state);
+        return SplitMix64.PIECES[SplitMix64.bounded(state, SplitMix64.PIECES.length)];
+    }
+
+    @Override
+    public PieceGenerator copy() { return new UniformGenerator(state); }
+}
+
+final class SevenBagGenerator implements PieceGenerator {
+    private final Tetrominoes[] bag = SplitMix64.PIECES.clone();
+    private long state;
+    private int index = bag.length;
+
+    SevenBagGenerator(long seed) { this.state = seed; }
+
+    private SevenBagGenerator(SevenBagGenerator other) {
+        System.arraycopy(other.bag, 0, bag, 0, bag.length);
+        this.state = other.state;
+        this.index = other.index;
+    }
+
+    @Override
+    public Tetrominoes next() {
+        if (index == bag.length) {
+            for (int i = bag.length - 1; i > 0; i--) {
+                state = SplitMix64.next(state);
+                int j = SplitMix64.bounded(state, i + 1);
+                Tetrominoes t = bag[i];
+                bag[i] = bag[j];
+                bag[j] = t;
+            }
+            index = 0;
+        }
+        return bag[index++];
+    }
+
+    @Override
+    public PieceGenerator copy() { return new SevenBagGenerator(this); }
+}
+
+final class SequenceGenerator implements PieceGenerator {
+    // Never written after construction, so copies share it.
+    private final Tetrominoes[] pieces;
+    private int index;
+
+    SequenceGenerator(Tetrominoes[] pieces, int index) {
+        this.pieces = pieces;
+        this.index = index;
+    }
+
+    @Override
+    public Tetrominoes next() {
+        Tetrominoes t = pieces[index];
+        index = index + 1 == pieces.length ? 0 : index + 1;
+        return t;
+    }
+
+    @Override
+    public PieceGenerator copy() { return new SequenceGenerator(pieces, index); }
+}
@@ -0,0 +1,141 @@
+package tetris;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Size-augmented treap: an ordered set with O(log n) insert, remove, rank and select.
+class RankTree<E> {
+    private static final class Node<E> {
+        final E value;
+        final int priority;
+        int size = 1;
+        Node<E> left, right;
+
+        Node(E value, int priority) {
+            this.value = value;
+            this.priority = priority;
+        }
+    }
+
+    private final Comparator<? super E> order;
+    private Node<E> root;
+    private int seed = 0x2545F491;
+
+    RankTree(Comparator<? super E> order) {
+        this.order = order;
+    }
+
+    int size() { return size(root); }
+
+    void clear() { root = null; }
+
+    // The caller guarantees value is not already present.
+    void add(E value) {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        Node<E>[] parts = split(root, value, false);
+        root = merge(merge(parts[0], new Node<>(value, seed)), parts[1]);
+    }
+
+    boolean remove(E value) {
+        Node<E>[] lower = split(root, value, false);
+        Node<E>[] upper = split(lower[1], value, true);
+        root = merge(lower[0], upper[1]);
+        return upper[0] != null;
+    }
+
+    // Number of elements ordered strictly before probe; probe need not be present.
+    int countBefore(E probe) {
+        int count = 0;
+        Node<E> n = root;
+        while (n != null) {
+            if (order.compare(probe, n.value) <= 0) {
+                n = n.left;
+            } else {
+                count += size(n.left) + 1;
+                n = n.right;
+            }
+        }
+        return count;
+    }
+
+    int indexOf(E value) {
+        int index = countBefore(value);
+        return index < size() && order.compare(get(index), value) == 0 ? index : -1;
+    }
+
+    E get(int index) {
+        Node<E> n = root;
+        while (n != null) {
+            int left = size(n.left);
+            if (index < left) {
+                n = n.left;
+            } else if (index == left) {
+                return n.value;
+            } else {
+                index -= left + 1;
+                n = n.right;
+            }
+        }
+        throw new IndexOutOfBoundsException("index: " + index);
+    }
+
+    // Elements at positions [from, to), visiting only the paths that reach them.
+    List<E> range(int from, int to) {
+        from = Math.max(0, from);
+        to = Math.min(size(), to);
+        List<E> out = new ArrayList<>(Math.max(0, to - from));
+        collect(root, 0, from, to, out);
+        return out;
+    }
+
+    List<E> toList() { return range(0, size()); }
+
+    private void collect(Node<E> n, int offset, int from, int to, List<E> out) {
+        if (n == null || from >= to) return;
+        int index = offset + size(n.left);
+        if (from < index) collect(n.left, offset, from, to, out);
+        if (from <= index && index < to) out.add(n.value);
+        if (index + 1 < to) collect(n.right, index + 1, from, to, out);
+    }
+
+    private static int size(Node<?> n) { return n == null ? 0 : n.size; }
+
+    // Splits into (before key, rest); with inclusive set, elements equal to key go to the first half.
+    @SuppressWarnings("unchecked")
+    private Node<E>[] split(Node<E> n, E key, boolean inclusive) {
+        if (n == null) return (Node<E>[]) new Node<?>[2];
+        int cmp = order.compare(n.value, key);
+        if (cmp < 0 || (inclusive && cmp == 0)) {
+            Node<E>[] parts = split(n.right, key, inclusive);
+            n.right = parts[0];
+            update(n);
+            parts[0] = n;
+            return parts;
+        }
+        Node<E>[] parts = split(n.left, key, inclusive);
+        n.left = parts[1];
+        update(n);
+        parts[1] = n;
+        return parts;
+    }
+
+    private Node<E> merge(Node<E> a, Node<E> b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        update(b);
+        return b;
+    }
+
+    private static void update(Node<?> n) {
+        n.size = 1 + size(n.left) + size(n.right);
+    }
+}
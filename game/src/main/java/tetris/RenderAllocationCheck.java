@@ -0,0 +1,81 @@
+package tetris;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+// Renders 10,000 frames of play into an image after a warm-up, the way the frame loop does: ask the
+// renderer for its damage, clip to it, render. Fails if damage or render allocated anything. The moves
+// are covered by AllocationCheck, and setClip is left out: Java2D builds a new clip region on every call.
+// Run with: java -Djava.awt.headless=true -cp game/target/classes tetris.RenderAllocationCheck
+public class RenderAllocationCheck {
+    private static final int WARMUP_FRAMES = 50_000;
+    private static final int MEASURED_FRAMES = 10_000;
+    private static final int WINDOWS = 5;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        long allocated = measure();
+        if (allocated > 0) {
+            System.err.println("FAIL: rendering allocated " + allocated + " bytes over " + MEASURED_FRAMES + " frames");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    // Bytes allocated over the best measured window, after the warm-up.
+    static long measure() {
+        TetrisBoard board = new TetrisBoard(12, 20);
+        Tetris.StandardBoardRenderer renderer = new Tetris.StandardBoardRenderer();
+        BufferedImage image = new BufferedImage(12 * renderer.getCellSize(), 20 * renderer.getCellSize(),
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        Random random = new Random(42);
+
+        frames(board, renderer, g, random, WARMUP_FRAMES);
+
+        long allocated = Long.MAX_VALUE;
+        for (int w = 0; w < WINDOWS && allocated > 0; w++) {
+            allocated = Math.min(allocated, frames(board, renderer, g, random, MEASURED_FRAMES));
+        }
+        g.dispose();
+
+        System.out.println("frames=" + MEASURED_FRAMES + " allocatedBytes=" + allocated);
+        return allocated;
+    }
+
+    // Bytes allocated by damage and render over the frames.
+    private static long frames(TetrisBoard board, Tetris.StandardBoardRenderer renderer, Graphics2D g, Random random,
+            int frames) {
+        long before = allocatedBytes();
+        long overhead = allocatedBytes() - before;
+        long allocated = 0;
+        for (int f = 0; f < frames; f++) {
+            if (!board.isStarted()) board.start();
+            switch (random.nextInt(8)) {
+                case 0: board.moveLeft(); break;
+                case 1: board.moveRight(); break;
+                case 2: board.rotateRight(); break;
+                case 3: board.dropDown(); board.tick(); break;
+                case 4: break;
+                default: board.tick(); break;
+            }
+            before = allocatedBytes();
+            Rectangle damage = renderer.damage(board);
+            allocated += allocatedBytes() - before - overhead;
+            g.setClip(damage);
+            before = allocatedBytes();
+            renderer.render(g, board);
+            allocated += allocatedBytes() - before - overhead;
+        }
+        return allocated;
+    }
+
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,399 @@
+package tetris;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Binary game recordings: the board size and piece seed, then one record per input in the order it
+// reached the board. The game is taken to start with board.start() at time 0.
+//
+//   header      int magic, byte cols, int rows, byte generator (0 uniform, 1 bag), long seed
+//   record      tag byte: bits 0-2 kind (0-6 Input, 7 checkpoint), bits 3-7 milliseconds since the previous
+//               record, with 31 meaning a varint delta follows
+//   checkpoint  varint length, TetrisBoard.Snapshot image of the board after the previous input
+//   index       varint count, then (varint time, varint offset) per checkpoint
+//   trailer     long end time, long index offset, int magic
+//
+// A recording cut off before close() has no trailer and still plays up to its last whole record.
+public final class Replay {
+    public enum Input {
+        MOVE_LEFT, MOVE_RIGHT, ROTATE_LEFT, ROTATE_RIGHT, DROP_DOWN, SOFT_DROP, TICK;
+
+        private static final Input[] VALUES = values();
+
+        public void apply(TetrisBoard board) {
+            switch (this) {
+                case MOVE_LEFT: board.moveLeft(); break;
+                case MOVE_RIGHT: board.moveRight(); break;
+                case ROTATE_LEFT: board.rotateLeft(); break;
+                case ROTATE_RIGHT: board.rotateRight(); break;
+                case DROP_DOWN: board.dropDown(); break;
+                case SOFT_DROP: board.softDrop(); break;
+                case TICK: board.tick(); break;
+            }
+        }
+    }
+
+    private static final int MAGIC = 0x54525031;
+    private static final int TRAILER_MAGIC = 0x5452504C;
+    private static final int TRAILER = 20;
+    private static final int CHECKPOINT = 7;
+    private static final int LONG_DELTA = 31;
+    private static final int BUFFER = 1 << 16;
+    private static final String[] GENERATORS = {"uniform", "bag"};
+
+    private Replay() {}
+
+    private static int generatorCode(String generator) {
+        int code = Arrays.asList(GENERATORS).indexOf(generator);
+        if (code < 0) throw new IllegalArgumentException("unknown piece generator: " + generator);
+        return code;
+    }
+
+    // Writes a recording incrementally through a direct buffer, handing it to the channel as it fills.
+    // Not thread-safe: record from the thread that drives the board.
+    public static final class Recorder implements Closeable {
+        private static final long CHECKPOINT_INTERVAL_MS = 10_000;
+        private static final int CHECKPOINT_INTERVAL_RECORDS = 4096;
+
+        private final WritableByteChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER);
+        private final ByteArrayOutputStream image = new ByteArrayOutputStream(512);
+        private final DataOutputStream imageOut = new DataOutputStream(image);
+        private final List<long[]> index = new ArrayList<>();
+        private long written;
+        private long lastTime;
+        private long lastCheckpointTime;
+        private int sinceCheckpoint;
+
+        public Recorder(WritableByteChannel channel, int cols, int rows, String generator, long seed) throws IOException {
+            this.channel = channel;
+            buf.putInt(MAGIC).put((byte) cols).putInt(rows).put((byte) generatorCode(generator)).putLong(seed);
+        }
+
+        public static Recorder create(Path file, int cols, int rows, String generator, long seed) throws IOException {
+            return new Recorder(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING), cols, rows, generator, seed);
+        }
+
+        // Call after the input has been applied to board; board is only read when a checkpoint is due.
+        public void record(Input input, long timeMillis, TetrisBoard board) throws IOException {
+            tag(input.ordinal(), timeMillis);
+            if (++sinceCheckpoint >= CHECKPOINT_INTERVAL_RECORDS || lastTime - lastCheckpointTime >= CHECKPOINT_INTERVAL_MS) {
+                checkpoint(board);
+            }
+        }
+
+        private void checkpoint(TetrisBoard board) throws IOException {
+            image.reset();
+            board.snapshot().writeTo(imageOut);
+            index.add(new long[] {lastTime, position()});
+            tag(CHECKPOINT, lastTime);
+            putVarLong(image.size());
+            byte[] bytes = image.toByteArray();
+            for (int off = 0; off < bytes.length; off += BUFFER) {
+                ensure(Math.min(BUFFER, bytes.length - off));
+                buf.put(bytes, off, Math.min(BUFFER, bytes.length - off));
+            }
+            sinceCheckpoint = 0;
+            lastCheckpointTime = lastTime;
+        }
+
+        private void tag(int kind, long timeMillis) throws IOException {
+            long delta = Math.max(0, timeMillis - lastTime);
+            lastTime += delta;
+            ensure(11);
+            if (delta < LONG_DELTA) {
+                buf.put((byte) (kind | delta << 3));
+            } else {
+                buf.put((byte) (kind | LONG_DELTA << 3));
+                putVarLong(delta);
+            }
+        }
+
+        private void putVarLong(long v) throws IOException {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf.put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            buf.put((byte) v);
+        }
+
+        private long position() { return written + buf.position(); }
+
+        private void ensure(int bytes) throws IOException {
+            if (buf.remaining() < bytes) drain();
+        }
+
+        private void drain() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) written += channel.write(buf);
+            buf.clear();
+        }
+
+        public void flush() throws IOException { drain(); }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                long indexOffset = position();
+                putVarLong(index.size());
+                for (long[] e : index) {
+                    putVarLong(e[0]);
+                    putVarLong(e[1]);
+                }
+                ensure(TRAILER);
+                buf.putLong(lastTime).putLong(indexOffset).putInt(TRAILER_MAGIC);
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    // Re-simulates a recording on a fresh board. Each checkpoint met on the way is compared with the
+    // re-simulated state; a mismatch means the recording does not reproduce and is counted in divergences().
+    public static final class Player implements Closeable {
+        private final SeekableByteChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocate(BUFFER);
+        private final int cols;
+        private final int rows;
+        private final String generator;
+        private final long seed;
+        private final long eventsStart;
+        private final long eventsEnd;
+        private final long endTime;
+        private final long[] checkpointTimes;
+        private final long[] checkpointOffsets;
+        private final ByteArrayOutputStream image = new ByteArrayOutputStream(512);
+        private final DataOutputStream imageOut = new DataOutputStream(image);
+        private TetrisBoard board;
+        private long bufStart;
+        private long time;
+        private Input pending;
+        private long pendingTime;
+        private int divergences;
+
+        public Player(SeekableByteChannel channel) throws IOException {
+            this.channel = channel;
+            long size = channel.size();
+            fill(0);
+            if (buf.remaining() < 18 || buf.getInt() != MAGIC) throw new IOException("not a replay");
+            cols = buf.get() & 0xFF;
+            rows = buf.getInt();
+            int code = buf.get() & 0xFF;
+            if (code >= GENERATORS.length) throw new IOException("unknown piece generator: " + code);
+            generator = GENERATORS[code];
+            seed = buf.getLong();
+            eventsStart = bufStart + buf.position();
+
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER);
+            if (size >= eventsStart + TRAILER) {
+                channel.position(size - TRAILER);
+                while (trailer.hasRemaining() && channel.read(trailer) > 0) {}
+            }
+            if (!trailer.hasRemaining() && trailer.getInt(16) == TRAILER_MAGIC) {
+                endTime = trailer.getLong(0);
+                eventsEnd = trailer.getLong(8);
+                fill(eventsEnd);
+                int n = (int) getVarLong();
+                checkpointTimes = new long[n];
+                checkpointOffsets = new long[n];
+                for (int i = 0; i < n; i++) {
+                    checkpointTimes[i] = getVarLong();
+                    checkpointOffsets[i] = getVarLong();
+                }
+            } else {
+                endTime = -1;
+                eventsEnd = size;
+                checkpointTimes = new long[0];
+                checkpointOffsets = new long[0];
+            }
+            rewind();
+        }
+
+        public static Player open(Path file) throws IOException {
+            return new Player(FileChannel.open(file, StandardOpenOption.READ));
+        }
+
+        public TetrisBoard board() { return board; }
+        public long seed() { return seed; }
+        public String generator() { return generator; }
+        // Time of the last applied input, in milliseconds from the start of the game.
+        public long time() { return time; }
+        // Recorded length of the game, or -1 for a recording that was never closed.
+        public long duration() { return endTime; }
+        public int divergences() { return divergences; }
+
+        private void rewind() throws IOException {
+            board = new TetrisBoard(cols, rows, PieceGenerator.of(generator, seed));
+            board.start();
+            time = 0;
+            pending = null;
+            fill(eventsStart);
+        }
+
+        // Applies the next input; false once the recording is exhausted.
+        public boolean step() throws IOException {
+            Input next = peek();
+            if (next == null) return false;
+            pending = null;
+            time = pendingTime;
+            next.apply(board);
+            return true;
+        }
+
+        public void playToEnd() throws IOException {
+            while (step()) {}
+        }
+
+        // Plays in real time scaled by speed (2.0 is double speed), calling onFrame after every input.
+        public void play(double speed, Consumer<TetrisBoard> onFrame) throws IOException, InterruptedException {
+            long origin = System.nanoTime() - (long) (time * 1_000_000 / speed);
+            Input next;
+            while ((next = peek()) != null) {
+                long due = origin + (long) (pendingTime * 1_000_000 / speed);
+                long wait = due - System.nanoTime();
+                if (wait > 0) Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                step();
+                onFrame.accept(board);
+            }
+        }
+
+        // Positions the replay after every input at or before timeMillis, restoring from the nearest
+        // preceding checkpoint instead of re-simulating from the start.
+        public void seek(long timeMillis) throws IOException {
+            int i = Arrays.binarySearch(checkpointTimes, timeMillis);
+            if (i < 0) i = -i - 2;
+            else while (i + 1 < checkpointTimes.length && checkpointTimes[i + 1] == timeMillis) i++;
+            boolean forward = timeMillis >= time;
+            long currentOffset = bufStart + buf.position();
+            if (i >= 0 && (!forward || checkpointOffsets[i] > currentOffset)) {
+                fill(checkpointOffsets[i]);
+                pending = null;
+                int tag = buf.get() & 0xFF;
+                time = checkpointTimes[i];
+                if ((tag >>> 3) == LONG_DELTA) getVarLong();
+                byte[] state = new byte[(int) getVarLong()];
+                get(state);
+                board = new TetrisBoard(TetrisBoard.Snapshot.fromBytes(state, PieceGenerator.of(generator, seed)));
+            } else if (!forward) {
+                rewind();
+            }
+            while (peek() != null && pendingTime <= timeMillis) step();
+        }
+
+        // Reads ahead to the next input, checking any checkpoints on the way.
+        private Input peek() throws IOException {
+            if (pending != null) return pending;
+            long t = time;
+            while (true) {
+                if (bufStart + buf.position() >= eventsEnd || !available(1)) return null;
+                long mark = bufStart + buf.position();
+                int tag = buf.get() & 0xFF;
+                long delta = tag >>> 3;
+                try {
+                    if (delta == LONG_DELTA) delta = getVarLong();
+                    t += delta;
+                    if ((tag & 7) != CHECKPOINT) {
+                        pending = Input.VALUES[tag & 7];
+                        pendingTime = t;
+                        return pending;
+                    }
+                    byte[] state = new byte[(int) getVarLong()];
+                    get(state);
+                    verify(state);
+                } catch (EOFException partial) {
+                    fill(mark);
+                    return null;
+                }
+            }
+        }
+
+        private void verify(byte[] recorded) throws IOException {
+            image.reset();
+            board.snapshot().writeTo(imageOut);
+            if (!Arrays.equals(recorded, image.toByteArray())) divergences++;
+        }
+
+        private void fill(long offset) throws IOException {
+            bufStart = offset;
+            buf.clear();
+            channel.position(offset);
+            while (buf.hasRemaining() && channel.read(buf) > 0) {}
+            buf.flip();
+        }
+
+        private boolean available(int bytes) throws IOException {
+            if (buf.remaining() >= bytes) return true;
+            fill(bufStart + buf.position());
+            return buf.remaining() >= bytes;
+        }
+
+        private long getVarLong() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (!available(1)) throw new EOFException();
+                byte b = buf.get();
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return v;
+            }
+            throw new IOException("malformed varint");
+        }
+
+        private void get(byte[] dst) throws IOException {
+            for (int off = 0; off < dst.length; ) {
+                if (!available(1)) throw new EOFException();
+                int n = Math.min(buf.remaining(), dst.length - off);
+                buf.get(dst, off, n);
+                off += n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException { channel.close(); }
+    }
+
+    // Audits recordings headless and in parallel, printing the re-simulated result of each.
+    // Usage: java -cp game/target/classes tetris.Replay <file or directory>...
+    public static void main(String[] args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String a : args) {
+            Path p = Paths.get(a);
+            if (Files.isDirectory(p)) {
+                try (Stream<Path> s = Files.list(p)) { s.filter(Files::isRegularFile).sorted().forEach(files::add); }
+            } else {
+                files.add(p);
+            }
+        }
+        long start = System.nanoTime();
+        List<String> lines = files.parallelStream().map(p -> {
+            try (Player player = Player.open(p)) {
+                player.playToEnd();
+                TetrisBoard b = player.board();
+                return p + "," + b.getScore() + "," + b.getPieceCount() + "," + player.time() + "," + player.divergences();
+            } catch (IOException e) {
+                return p + ",error," + e.getMessage();
+            }
+        }).collect(Collectors.toList());
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println("file,score,pieces,millis,divergences");
+        lines.forEach(System.out::println);
+        System.out.println(String.format(Locale.ROOT, "replays=%d elapsed=%.3fs replays/s=%.0f",
+                files.size(), seconds, files.size() / seconds));
+    }
+}
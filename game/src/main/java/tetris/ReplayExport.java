@@ -0,0 +1,339 @@
+package tetris;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+// Headless exporter: replays recordings, or plays seeded bot games, and renders chosen positions through
+// StandardBoardRenderer into offscreen images. The output is a PNG per frame, or one PNG sprite sheet per game.
+// Producer threads play the games and hand board copies to render workers through a bounded queue. The
+// producers block whenever the workers fall behind, so memory stays flat however many games are exported.
+// Each worker keeps its own renderer and frame image, and encodes what it renders.
+// A frame is taken every everyPieces pieces, after each clear of highlightLines or more, and at the end of the
+// game, up to maxFrames per game.
+public final class ReplayExport {
+    private static final Job POISON = new Job(null, null, 0, null);
+
+    // A game being exported, advanced one input or step at a time on the board start() returns.
+    private interface Game extends Closeable {
+        String name();
+        TetrisBoard start() throws IOException;
+        // False once the game is over.
+        boolean step() throws IOException;
+        default void close() throws IOException {}
+    }
+
+    private static final class Job {
+        final TetrisBoard board;
+        final Sheet sheet;
+        final int index;
+        final Path file;
+
+        Job(TetrisBoard board, Sheet sheet, int index, Path file) {
+            this.board = board;
+            this.sheet = sheet;
+            this.index = index;
+            this.file = file;
+        }
+    }
+
+    // One game's frames tiled left to right, top to bottom. Workers copy their frames into disjoint tiles; the
+    // one that copies the last frame writes the file.
+    private static final class Sheet {
+        final BufferedImage image;
+        final int columns, tileWidth, tileHeight;
+        final Path file;
+        final AtomicInteger missing;
+
+        Sheet(int frames, int columns, int tileWidth, int tileHeight, Path file) {
+            this.columns = Math.min(columns, frames);
+            this.tileWidth = tileWidth;
+            this.tileHeight = tileHeight;
+            int rows = (frames + this.columns - 1) / this.columns;
+            this.image = new BufferedImage(this.columns * tileWidth, rows * tileHeight, BufferedImage.TYPE_INT_RGB);
+            this.file = file;
+            this.missing = new AtomicInteger(frames);
+        }
+    }
+
+    public static final class Report {
+        public final int games;
+        public final long frames;
+        public final long files;
+        public final long failures;
+        public final long elapsedNanos;
+
+        Report(int games, long frames, long files, long failures, long elapsedNanos) {
+            this.games = games;
+            this.frames = frames;
+            this.files = files;
+            this.failures = failures;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public String summary() {
+            return String.format(Locale.ROOT, "games=%d frames=%d files=%d failures=%d elapsed=%.3fs frames/s=%.0f",
+                    games, frames, files, failures, elapsedNanos / 1e9, frames * 1e9 / elapsedNanos);
+        }
+    }
+
+    private final Path outDir;
+    private final int cellSize;
+    private final int sheetColumns;
+    private final int threads;
+    private int everyPieces = 25, highlightLines = 2, maxFrames = 16;
+    private final AtomicLong frames = new AtomicLong(), files = new AtomicLong(), failures = new AtomicLong();
+
+    // sheetColumns 0 writes every frame to a PNG of its own instead of a sheet per game.
+    public ReplayExport(Path outDir, int cellSize, int sheetColumns, int threads) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be positive: " + threads);
+        if (sheetColumns < 0) throw new IllegalArgumentException("sheetColumns must not be negative: " + sheetColumns);
+        if (cellSize < 4) throw new IllegalArgumentException("cellSize must be at least 4: " + cellSize);
+        this.outDir = outDir;
+        this.cellSize = cellSize;
+        this.sheetColumns = sheetColumns;
+        this.threads = threads;
+    }
+
+    // everyPieces or highlightLines 0 turns that trigger off; the final position is always taken.
+    public ReplayExport select(int everyPieces, int highlightLines, int maxFrames) {
+        if (everyPieces < 0 || highlightLines < 0 || maxFrames < 1) throw new IllegalArgumentException("bad frame selection");
+        this.everyPieces = everyPieces;
+        this.highlightLines = highlightLines;
+        this.maxFrames = maxFrames;
+        return this;
+    }
+
+    public Report exportReplays(List<Path> recordings) {
+        List<Game> games = new ArrayList<>();
+        for (Path p : recordings) {
+            String name = p.getFileName().toString().replaceFirst("\\.replay$", "");
+            games.add(new Game() {
+                private Replay.Player player;
+
+                public String name() { return name; }
+
+                public TetrisBoard start() throws IOException {
+                    player = Replay.Player.open(p);
+                    return player.board();
+                }
+
+                public boolean step() throws IOException { return player.step(); }
+
+                public void close() throws IOException {
+                    if (player != null) player.close();
+                }
+            });
+        }
+        return run(games);
+    }
+
+    // Greedy one-ply bot games, each until game over or maxPieces pieces.
+    public Report exportSeeds(long firstSeed, int count, int maxPieces, String generator) {
+        List<Game> games = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long seed = firstSeed + i;
+            games.add(new Game() {
+                private final AutoPlayer bot = new AutoPlayer(AutoPlayer.WeightedHeuristic.standard(), 1, 1, null);
+                private TetrisBoard board;
+
+                public String name() { return "seed-" + seed; }
+
+                public TetrisBoard start() {
+                    board = new TetrisBoard(10, 20, PieceGenerator.of(generator, seed));
+                    board.start();
+                    return board;
+                }
+
+                public boolean step() {
+                    bot.act(board);
+                    board.tick();
+                    return board.isStarted() && board.getPieceCount() <= maxPieces;
+                }
+            });
+        }
+        return run(games);
+    }
+
+    private Report run(List<Game> games) {
+        long start = System.nanoTime();
+        BlockingQueue<Job> queue = new ArrayBlockingQueue<>(2 * threads);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(() -> work(queue), "export-render-" + i);
+            t.setDaemon(true);
+            t.start();
+            workers.add(t);
+        }
+        ExecutorService producers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "export-play");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (Game g : games) done.add(producers.submit(() -> produce(g, queue)));
+            for (int i = 0; i < done.size(); i++) {
+                try {
+                    done.get(i).get();
+                } catch (ExecutionException e) {
+                    failures.incrementAndGet();
+                    System.err.println("export failed: " + games.get(i).name() + ": " + e.getCause());
+                }
+            }
+            for (int i = 0; i < threads; i++) queue.put(POISON);
+            for (Thread t : workers) t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("export interrupted", e);
+        } finally {
+            producers.shutdownNow();
+        }
+        return new Report(games.size(), frames.get(), files.get(), failures.get(), System.nanoTime() - start);
+    }
+
+    private Void produce(Game game, BlockingQueue<Job> queue) throws IOException, InterruptedException {
+        try (game) {
+            TetrisBoard board = game.start();
+            boolean[] highlight = {false};
+            BoardListener clears = new BoardListener() {
+                public void linesCleared(TetrisBoard b, int[] rows, int count) {
+                    if (highlightLines > 0 && count >= highlightLines) highlight[0] = true;
+                }
+            };
+            board.addListener(clears);
+            // Sheets are only sized once the game is over, so their frames wait here; single frames go straight out.
+            List<TetrisBoard> sheetFrames = new ArrayList<>();
+            Path dir = sheetColumns == 0 ? Files.createDirectories(outDir.resolve(game.name())) : null;
+            int taken = 0, pieces = board.getPieceCount();
+            while (game.step()) {
+                boolean take = highlight[0];
+                highlight[0] = false;
+                if (board.getPieceCount() != pieces) {
+                    pieces = board.getPieceCount();
+                    if (everyPieces > 0 && pieces % everyPieces == 0) take = true;
+                }
+                // The last slot is kept for the final position.
+                if (take && taken < maxFrames - 1) take(board.copy(), taken++, dir, sheetFrames, queue);
+            }
+            board.removeListener(clears);
+            take(board.copy(), taken, dir, sheetFrames, queue);
+            if (dir != null) return null;
+            Sheet sheet = new Sheet(sheetFrames.size(), sheetColumns, board.getCols() * cellSize, board.getRows() * cellSize,
+                    Files.createDirectories(outDir).resolve(game.name() + ".png"));
+            for (int i = 0; i < sheetFrames.size(); i++) queue.put(new Job(sheetFrames.get(i), sheet, i, null));
+            return null;
+        }
+    }
+
+    private static void take(TetrisBoard copy, int index, Path dir, List<TetrisBoard> sheetFrames, BlockingQueue<Job> queue)
+            throws InterruptedException {
+        if (dir == null) {
+            sheetFrames.add(copy);
+        } else {
+            queue.put(new Job(copy, null, index, dir.resolve(String.format(Locale.ROOT, "frame-%04d.png", index))));
+        }
+    }
+
+    private void work(BlockingQueue<Job> queue) {
+        Tetris.StandardBoardRenderer renderer = new Tetris.StandardBoardRenderer(cellSize);
+        BufferedImage frame = null;
+        Graphics2D g = null;
+        try {
+            for (Job job; (job = queue.take()) != POISON; ) {
+                int w = job.board.getCols() * cellSize, h = job.board.getRows() * cellSize;
+                if (frame == null || frame.getWidth() != w || frame.getHeight() != h) {
+                    if (g != null) g.dispose();
+                    frame = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+                    g = frame.createGraphics();
+                }
+                try {
+                    renderer.render(g, job.board);
+                    frames.incrementAndGet();
+                    if (job.sheet == null) {
+                        write(frame, job.file);
+                    } else {
+                        Sheet s = job.sheet;
+                        int x = job.index % s.columns * s.tileWidth, y = job.index / s.columns * s.tileHeight;
+                        s.image.getRaster().setDataElements(x, y, frame.getRaster());
+                        if (s.missing.decrementAndGet() == 0) write(s.image, s.file);
+                    }
+                } catch (IOException e) {
+                    failures.incrementAndGet();
+                    System.err.println("export failed: " + e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (g != null) g.dispose();
+        }
+    }
+
+    private void write(BufferedImage image, Path file) throws IOException {
+        if (!ImageIO.write(image, "png", file.toFile())) throw new IOException("no PNG writer");
+        files.incrementAndGet();
+    }
+
+    // Usage: java -cp game/target/classes tetris.ReplayExport [--out dir] [--cell px] [--columns n | --frames]
+    //     [--every pieces] [--highlight lines] [--max-frames n] [--threads n]
+    //     (<replay file or directory>... | --seeds first:count [--pieces n] [--bag])
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        ImageIO.setUseCache(false);
+        Path out = Paths.get("export");
+        int cell = 12, columns = 8, every = 25, highlight = 2, max = 16, pieces = 300;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String generator = "uniform", seeds = null;
+        List<Path> recordings = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out": out = Paths.get(args[++i]); break;
+                case "--cell": cell = Integer.parseInt(args[++i]); break;
+                case "--columns": columns = Integer.parseInt(args[++i]); break;
+                case "--frames": columns = 0; break;
+                case "--every": every = Integer.parseInt(args[++i]); break;
+                case "--highlight": highlight = Integer.parseInt(args[++i]); break;
+                case "--max-frames": max = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--seeds": seeds = args[++i]; break;
+                case "--pieces": pieces = Integer.parseInt(args[++i]); break;
+                case "--bag": generator = "bag"; break;
+                default:
+                    Path p = Paths.get(args[i]);
+                    if (Files.isDirectory(p)) {
+                        try (Stream<Path> s = Files.list(p)) { s.filter(Files::isRegularFile).sorted().forEach(recordings::add); }
+                    } else {
+                        recordings.add(p);
+                    }
+            }
+        }
+        ReplayExport export = new ReplayExport(out, cell, columns, threads).select(every, highlight, max);
+        Report report;
+        if (seeds != null) {
+            String[] range = seeds.split(":");
+            report = export.exportSeeds(Long.parseLong(range[0]), Integer.parseInt(range[1]), pieces, generator);
+        } else {
+            report = export.exportReplays(recordings);
+        }
+        System.out.println(report.summary());
+    }
+}
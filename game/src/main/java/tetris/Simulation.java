@@ -0,0 +1,182 @@
+package tetris;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongFunction;
+import java.util.stream.IntStream;
+
+// Headless batch runner: plays seeded games on a ForkJoin pool without touching Swing/AWT.
+public class Simulation {
+    public interface Policy {
+        // Called once per engine step, before the board ticks.
+        void act(TetrisBoard board);
+    }
+
+    public static class GameResult {
+        public final long seed;
+        public final int score;
+        public final int pieces;
+        public final long ticks;
+        public final long nanos;
+
+        GameResult(long seed, int score, int pieces, long ticks, long nanos) {
+            this.seed = seed;
+            this.score = score;
+            this.pieces = pieces;
+            this.ticks = ticks;
+            this.nanos = nanos;
+        }
+    }
+
+    public static class Report {
+        public final GameResult[] games;
+        public final long elapsedNanos;
+        public final int threads;
+
+        Report(GameResult[] games, long elapsedNanos, int threads) {
+            this.games = games;
+            this.elapsedNanos = elapsedNanos;
+            this.threads = threads;
+        }
+
+        public long totalPieces() {
+            long n = 0;
+            for (GameResult g : games) n += g.pieces;
+            return n;
+        }
+
+        public double gamesPerSecond() { return games.length * 1e9 / elapsedNanos; }
+        public double piecesPerSecond() { return totalPieces() * 1e9 / elapsedNanos; }
+
+        public double meanScore() {
+            double sum = 0;
+            for (GameResult g : games) sum += g.score;
+            return games.length == 0 ? 0 : sum / games.length;
+        }
+
+        public double scoreStdDev() {
+            double mean = meanScore(), sq = 0;
+            for (GameResult g : games) sq += (g.score - mean) * (g.score - mean);
+            return games.length == 0 ? 0 : Math.sqrt(sq / games.length);
+        }
+
+        // Nearest-rank percentile of the per-game scores, p in [0, 100].
+        public int scorePercentile(double p) {
+            if (games.length == 0) return 0;
+            int[] scores = new int[games.length];
+            for (int i = 0; i < games.length; i++) scores[i] = games[i].score;
+            Arrays.sort(scores);
+            int rank = (int) Math.ceil(p / 100.0 * scores.length);
+            return scores[Math.max(0, Math.min(scores.length - 1, rank - 1))];
+        }
+
+        public String summary() {
+            return String.format(Locale.ROOT,
+                    "games=%d threads=%d elapsed=%.3fs games/s=%.1f pieces/s=%.0f%n"
+                    + "score min=%d p50=%d p90=%d p99=%d max=%d mean=%.2f stddev=%.2f",
+                    games.length, threads, elapsedNanos / 1e9, gamesPerSecond(), piecesPerSecond(),
+                    scorePercentile(0), scorePercentile(50), scorePercentile(90), scorePercentile(99),
+                    scorePercentile(100), meanScore(), scoreStdDev());
+        }
+    }
+
+    private final int cols;
+    private final int rows;
+    private final int maxPieces;
+    private final int threads;
+    private final LongFunction<? extends PieceGenerator> generators;
+
+    public Simulation(int cols, int rows, int maxPieces, int threads) {
+        this(cols, rows, maxPieces, threads, PieceGenerator::uniform);
+    }
+
+    // Every game gets its own generator built from its seed, so threads share no random state.
+    public Simulation(int cols, int rows, int maxPieces, int threads, LongFunction<? extends PieceGenerator> generators) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be positive: " + threads);
+        this.cols = cols;
+        this.rows = rows;
+        this.maxPieces = maxPieces;
+        this.threads = threads;
+        this.generators = generators;
+    }
+
+    // Plays games with seeds firstSeed .. firstSeed + games - 1; policies are created per game from its seed.
+    public Report run(LongFunction<? extends Policy> policies, long firstSeed, int games) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try {
+            GameResult[] results = pool.submit(() -> IntStream.range(0, games).parallel()
+                    .mapToObj(i -> play(policies.apply(firstSeed + i), firstSeed + i))
+                    .toArray(GameResult[]::new)).get();
+            return new Report(results, System.nanoTime() - start, threads);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("simulation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("simulation failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public GameResult play(Policy policy, long seed) {
+        long start = System.nanoTime();
+        TetrisBoard board = new TetrisBoard(cols, rows, generators.apply(seed));
+        board.start();
+        long ticks = 0;
+        while (board.isStarted() && board.getPieceCount() <= maxPieces) {
+            policy.act(board);
+            board.tick();
+            ticks++;
+        }
+        return new GameResult(seed, board.getScore(), board.getPieceCount(), ticks, System.nanoTime() - start);
+    }
+
+    // Baseline policy: one seeded random move, rotation or hard drop per step.
+    static class RandomPolicy implements Policy {
+        private long state;
+
+        RandomPolicy(long seed) { this.state = seed; }
+
+        public void act(TetrisBoard board) {
+            switch (next(6)) {
+                case 0: board.moveLeft(); break;
+                case 1: board.moveRight(); break;
+                case 2: board.rotateLeft(); break;
+                case 3: board.rotateRight(); break;
+                case 4: board.dropDown(); break;
+                default: break;
+            }
+        }
+
+        private int next(int bound) {
+            state ^= state << 13;
+            state ^= state >>> 7;
+            state ^= state << 17;
+            return (int) ((state >>> 1) % bound);
+        }
+    }
+
+    // Usage: java -cp game/target/classes tetris.Simulation [games] [firstSeed] [threads] [maxPieces] [--per-game] [--bag]
+    public static void main(String[] args) {
+        boolean perGame = Arrays.asList(args).contains("--per-game");
+        String pieces = Arrays.asList(args).contains("--bag") ? "bag" : "uniform";
+        String[] pos = Arrays.stream(args).filter(a -> !a.startsWith("--")).toArray(String[]::new);
+        int games = pos.length > 0 ? Integer.parseInt(pos[0]) : 1000;
+        long firstSeed = pos.length > 1 ? Long.parseLong(pos[1]) : 1;
+        int threads = pos.length > 2 ? Integer.parseInt(pos[2]) : Runtime.getRuntime().availableProcessors();
+        int maxPieces = pos.length > 3 ? Integer.parseInt(pos[3]) : 10_000;
+
+        Simulation sim = new Simulation(10, 20, maxPieces, threads, seed -> PieceGenerator.of(pieces, seed));
+        Report report = sim.run(seed -> new RandomPolicy(seed | 1), firstSeed, games);
+        System.out.println(report.summary());
+        if (perGame) {
+            System.out.println("seed,score,pieces,ticks,micros");
+            for (GameResult g : report.games) {
+                System.out.println(g.seed + "," + g.score + "," + g.pieces + "," + g.ticks + "," + g.nanos / 1000);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package tetris;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Watches a SpectatorServer with many subscribers from one selector thread. Every reading subscriber decodes its
+// stream in full, so a broken frame or an unannounced gap shows up in the counts. Stalled subscribers connect but
+// never read, to exercise the server's slow-consumer handling. At the end the first subscriber's board is printed.
+public final class SpectatorClient {
+    private static final class Watcher {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(1 << 14);
+        final SpectatorStream.Decoder decoder = new SpectatorStream.Decoder();
+
+        Watcher(SocketChannel channel) { this.channel = channel; }
+    }
+
+    // Usage: java -cp game/target/classes tetris.SpectatorClient [host:port] [subscribers] [seconds] [stalled]
+    public static void main(String[] args) throws Exception {
+        String[] hostPort = (args.length > 0 ? args[0] : "localhost:7778").split(":");
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 10;
+        int stalled = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        InetSocketAddress address = new InetSocketAddress(hostPort[0], Integer.parseInt(hostPort[1]));
+
+        Selector selector = Selector.open();
+        List<Watcher> watchers = new ArrayList<>();
+        List<SocketChannel> idle = new ArrayList<>();
+        for (int i = 0; i < readers + stalled; i++) {
+            SocketChannel channel = SocketChannel.open(address);
+            if (i < readers) {
+                channel.configureBlocking(false);
+                Watcher w = new Watcher(channel);
+                channel.register(selector, SelectionKey.OP_READ, w);
+                watchers.add(w);
+            } else {
+                idle.add(channel);
+            }
+        }
+
+        long start = System.nanoTime(), lastReport = start, bytes = 0, reportBytes = 0, closed = 0;
+        while (System.nanoTime() - start < seconds * 1_000_000_000L) {
+            selector.select(100);
+            for (SelectionKey key : selector.selectedKeys()) {
+                Watcher w = (Watcher) key.attachment();
+                int n;
+                try {
+                    n = w.channel.read(w.in);
+                } catch (IOException e) {
+                    n = -1;
+                }
+                if (n < 0) {
+                    key.cancel();
+                    w.channel.close();
+                    closed++;
+                    continue;
+                }
+                bytes += n;
+                w.in.flip();
+                while (w.in.remaining() >= 2 && w.in.remaining() >= SpectatorStream.frameLength(w.in, w.in.position())) {
+                    w.decoder.accept(w.in);
+                }
+                w.in.compact();
+            }
+            selector.selectedKeys().clear();
+
+            long now = System.nanoTime();
+            if (now - lastReport >= 1_000_000_000L) {
+                long frames = 0, gaps = 0;
+                for (Watcher w : watchers) {
+                    frames += w.decoder.getFrames();
+                    gaps += w.decoder.getGaps();
+                }
+                System.out.println(String.format(Locale.ROOT, "t=%2.0fs readers=%d closed=%d %.1f KB/s frames/reader=%.0f gaps=%d",
+                        (now - start) / 1e9, watchers.size() - closed, closed, (bytes - reportBytes) / 1024.0 / ((now - lastReport) / 1e9),
+                        watchers.isEmpty() ? 0.0 : (double) frames / watchers.size(), gaps));
+                reportBytes = bytes;
+                lastReport = now;
+            }
+        }
+        if (!watchers.isEmpty()) System.out.println(watchers.get(0).decoder);
+        for (SocketChannel c : idle) c.close();
+        for (Watcher w : watchers) w.channel.close();
+    }
+}
@@ -0,0 +1,271 @@
+package tetris;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Fans a SpectatorStream out to any number of subscribers from one selector thread. Published frames are
+// appended once to a shared ring buffer. Each subscriber only holds an offset into the ring and a view of it
+// made when it joined, so a frame is never copied per subscriber. A subscriber that falls more than half the
+// ring behind is skipped forward to the next keyframe instead of being buffered for. Only then is anything copied:
+// the unsent rest of the frame it is in the middle of, so its stream stays whole.
+public final class SpectatorServer {
+    private static final int DEFAULT_RING_BYTES = 1 << 16;
+    // Kept small so a slow subscriber's backlog stays in the ring, where it can be skipped, rather than in the
+    // kernel's send buffer.
+    private static final int SEND_BUFFER_BYTES = 8 * 1024;
+
+    private static final class Subscriber {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final ByteBuffer view;
+        // Next byte to send, and the start of the frame it lies in.
+        long offset, boundary;
+        boolean waiting;
+        // The rest of a frame cut short by a skip, sent before anything else.
+        ByteBuffer rest;
+
+        Subscriber(SocketChannel channel, SelectionKey key, ByteBuffer view) {
+            this.channel = channel;
+            this.key = key;
+            this.view = view;
+        }
+    }
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final ByteBuffer ring;
+    private final int mask;
+    private final ConcurrentLinkedQueue<byte[]> published = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private final Thread thread;
+    private volatile boolean running;
+    private volatile int subscriberCount;
+    private volatile long skips, dropped;
+    // Selector thread only: end of the last appended frame and start of the last keyframe (-1 before one).
+    private long tail, lastKeyframe = -1;
+
+    public SpectatorServer(int port) throws IOException {
+        this(port, DEFAULT_RING_BYTES);
+    }
+
+    public SpectatorServer(int port, int ringBytes) throws IOException {
+        if (ringBytes < 1 << 12 || Integer.bitCount(ringBytes) != 1) {
+            throw new IllegalArgumentException("ring size must be a power of two of at least 4096: " + ringBytes);
+        }
+        this.ring = ByteBuffer.allocateDirect(ringBytes);
+        this.mask = ringBytes - 1;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        this.thread = new Thread(this::run, "tetris-spectators");
+        thread.setDaemon(true);
+    }
+
+    public int getPort() { return server.socket().getLocalPort(); }
+    public int getSubscribers() { return subscriberCount; }
+    // Times a slow subscriber was skipped forward, and subscribers lost to write errors.
+    public long getSkips() { return skips; }
+    public long getDropped() { return dropped; }
+
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Any thread. frame is one whole SpectatorStream frame and must not be modified afterwards.
+    public void publish(byte[] frame) {
+        if (frame.length > ring.capacity() / 4) throw new IllegalArgumentException("frame too large: " + frame.length);
+        published.add(frame);
+        if (wakeupPending.compareAndSet(false, true)) selector.wakeup();
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                wakeupPending.set(false);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (key.isValid() && key.isAcceptable()) accept();
+                }
+                selector.selectedKeys().clear();
+                // Append at most a quarter ring per pass, so a subscriber within half a ring of the tail before
+                // the append still has all its bytes intact after it.
+                long limit = tail + ring.capacity() / 4;
+                for (byte[] frame; (frame = published.peek()) != null && tail + frame.length <= limit; ) {
+                    append(published.poll());
+                }
+                for (int i = subscribers.size() - 1; i >= 0; i--) flush(subscribers.get(i), i);
+                if (!published.isEmpty()) selector.wakeup();
+            }
+        } catch (IOException e) {
+            System.err.println("spectator server stopped: " + e);
+        } finally {
+            for (Subscriber s : subscribers) closeQuietly(s.channel);
+            closeQuietly(server);
+            try {
+                selector.close();
+            } catch (IOException ignore) {}
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, SEND_BUFFER_BYTES);
+            SelectionKey key = channel.register(selector, 0);
+            Subscriber s = new Subscriber(channel, key, ring.duplicate());
+            // Start from the newest keyframe if the ring still holds it, otherwise wait for the next one.
+            if (lastKeyframe >= 0 && lastKeyframe >= tail - ring.capacity() / 2) {
+                s.offset = s.boundary = lastKeyframe;
+            } else {
+                s.waiting = true;
+            }
+            subscribers.add(s);
+            subscriberCount = subscribers.size();
+        }
+    }
+
+    private void append(byte[] frame) {
+        if (frame[2] == SpectatorStream.KEYFRAME) {
+            lastKeyframe = tail;
+            for (Subscriber s : subscribers) {
+                if (s.waiting) {
+                    s.waiting = false;
+                    s.offset = s.boundary = tail;
+                }
+            }
+        }
+        int at = (int) tail & mask, first = Math.min(frame.length, ring.capacity() - at);
+        ring.put(at, frame, 0, first);
+        ring.put(0, frame, first, frame.length - first);
+        tail += frame.length;
+    }
+
+    private void flush(Subscriber s, int index) {
+        if (!s.waiting) {
+            advanceBoundary(s);
+            if (tail - s.boundary > ring.capacity() / 2) skip(s);
+        }
+        boolean restPending = s.rest != null && s.rest.hasRemaining();
+        try {
+            if (restPending) {
+                s.channel.write(s.rest);
+                restPending = s.rest.hasRemaining();
+            }
+            while (!restPending && !s.waiting && s.offset < tail) {
+                int at = (int) s.offset & mask;
+                int n = (int) Math.min(tail - s.offset, ring.capacity() - at);
+                s.view.limit(at + n).position(at);
+                int written = s.channel.write(s.view);
+                s.offset += written;
+                if (written < n) break;
+            }
+        } catch (IOException e) {
+            drop(s, index);
+            return;
+        }
+        int ops = restPending || (!s.waiting && s.offset < tail) ? SelectionKey.OP_WRITE : 0;
+        if (s.key.interestOps() != ops) s.key.interestOps(ops);
+    }
+
+    // Moves the subscriber's boundary over every frame it has sent completely.
+    private void advanceBoundary(Subscriber s) {
+        while (s.boundary < s.offset) {
+            int length = frameLength(s.boundary);
+            if (s.boundary + length > s.offset) break;
+            s.boundary += length;
+        }
+    }
+
+    // Jumps to the newest keyframe ahead of the subscriber, or waits for the next one. Appends never outrun a
+    // subscriber by more than a quarter ring per pass, so the frame it is in is still intact here.
+    private void skip(Subscriber s) {
+        skips++;
+        if (s.boundary != s.offset) {
+            long end = s.boundary + frameLength(s.boundary);
+            if (s.rest == null) s.rest = ByteBuffer.allocate(ring.capacity() / 4);
+            s.rest.clear();
+            for (long i = s.offset; i < end; i++) s.rest.put(ring.get((int) i & mask));
+            s.rest.flip();
+        }
+        if (lastKeyframe > s.offset) {
+            s.offset = s.boundary = lastKeyframe;
+        } else {
+            s.waiting = true;
+        }
+    }
+
+    private int frameLength(long at) {
+        return (ring.get((int) at & mask) & 0xFF) << 8 | ring.get((int) (at + 1) & mask) & 0xFF;
+    }
+
+    private void drop(Subscriber s, int index) {
+        dropped++;
+        s.key.cancel();
+        closeQuietly(s.channel);
+        subscribers.set(index, subscribers.get(subscribers.size() - 1));
+        subscribers.remove(subscribers.size() - 1);
+        subscriberCount = subscribers.size();
+    }
+
+    private static void closeQuietly(java.io.Closeable c) {
+        try {
+            c.close();
+        } catch (IOException ignore) {}
+    }
+
+    // Usage: java -cp game/target/classes tetris.SpectatorServer [port]
+    // Streams an endless AutoPlayer game at 60 Hz for spectators to watch (see SpectatorClient).
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7778;
+        SpectatorServer server = new SpectatorServer(port);
+        server.start();
+        System.out.println("streaming on port " + server.getPort());
+        SpectatorStream.Encoder encoder = new SpectatorStream.Encoder(60);
+        AutoPlayer bot = new AutoPlayer();
+        TetrisBoard board = new TetrisBoard(10, 20);
+        encoder.attach(board);
+        board.start();
+        Runnable step = new Runnable() {
+            long steps;
+
+            public void run() {
+                if (!board.isStarted()) board.start();
+                bot.act(board);
+                // Gravity of one row every six steps, ten a second.
+                if (++steps % 6 == 0) board.tick();
+                byte[] frame = encoder.next();
+                if (frame != null) server.publish(frame);
+            }
+        };
+        GameLoop loop = new GameLoop(60, step, () -> {}, stats -> System.out.println(String.format(Locale.ROOT,
+                "%s  subscribers=%d skips=%d dropped=%d", stats, server.getSubscribers(), server.getSkips(), server.getDropped())));
+        loop.start("tetris-spectator-game");
+        Thread.currentThread().join();
+    }
+}
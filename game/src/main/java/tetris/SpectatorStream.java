@@ -0,0 +1,238 @@
+package tetris;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Wire format of the spectator stream, big-endian. Every frame starts with its total length, so a reader can
+// split the stream without parsing bodies:
+//   frame    := length (u16) | type (u8) | seq (u32) | body
+//   KEYFRAME := cols (u8) | rows (u8) | score (u32) | piece | rows * row, bottom row first
+//   DELTA    := flags (u8) | [piece if PIECE] | [score (u32) if SCORE] | [n (u8) | n * (y (u8) | row) if ROWS]
+//   piece    := shape (u8) | rotation (u8) | x (s16) | y (s16)
+//   row      := (cols + 1) / 2 bytes, a 4-bit shape ordinal per cell, low nibble first
+// Deltas only make sense on top of the frame with seq one lower; a reader that misses a frame waits for the
+// next keyframe.
+final class SpectatorStream {
+    static final int KEYFRAME = 1, DELTA = 2;
+    static final int PIECE = 1, SCORE = 2, ROWS = 4;
+    static final int HEADER_BYTES = 7;
+    static final int MAX_DIMENSION = 255;
+
+    private SpectatorStream() {}
+
+    static int rowBytes(int cols) { return (cols + 1) / 2; }
+
+    static int frameLength(ByteBuffer b, int at) { return b.getShort(at) & 0xFFFF; }
+
+    // Encodes one board, one frame per call to next(). Changed rows come from board events: a lock dirties the
+    // rows the piece covered, a line clear everything from the lowest cleared row to the top of the stack.
+    // Keyframes go out every keyframeInterval frames, on attach, and after a game over or restart.
+    static final class Encoder implements BoardListener {
+        private final int keyframeInterval;
+        private TetrisBoard board;
+        private ByteBuffer out;
+        private int seq;
+        private int sinceKeyframe;
+        private boolean keyframeDue = true;
+        private int dirtyFrom = Integer.MAX_VALUE, dirtyTo = -1;
+        private int lastShape = -1, lastRotation, lastX, lastY, lastScore, lastPieces;
+
+        Encoder(int keyframeInterval) {
+            if (keyframeInterval < 1) throw new IllegalArgumentException("keyframeInterval must be positive: " + keyframeInterval);
+            this.keyframeInterval = keyframeInterval;
+        }
+
+        // Follows a new board; the next frame is a keyframe.
+        void attach(TetrisBoard board) {
+            if (this.board != null) this.board.removeListener(this);
+            if (board.getCols() > MAX_DIMENSION || board.getRows() > MAX_DIMENSION) {
+                throw new IllegalArgumentException("board too large to stream: " + board.getCols() + "x" + board.getRows());
+            }
+            this.board = board;
+            int max = HEADER_BYTES + 10 + board.getRows() * (1 + rowBytes(board.getCols())) + 8;
+            if (out == null || out.capacity() < max) out = ByteBuffer.allocate(max);
+            board.addListener(this);
+            keyframeDue = true;
+        }
+
+        void requestKeyframe() { keyframeDue = true; }
+
+        @Override
+        public void pieceLocked(TetrisBoard board, Tetromino piece, int x, int y) {
+            dirty(y - piece.maxY(), y - piece.minY());
+        }
+
+        @Override
+        public void linesCleared(TetrisBoard board, int[] rows, int count) {
+            int top = 0;
+            for (int x = 0; x < board.getCols(); x++) top = Math.max(top, board.columnHeight(x));
+            dirty(rows[0], Math.min(board.getRows() - 1, top + count - 1));
+        }
+
+        @Override
+        public void gameOver(TetrisBoard board) { keyframeDue = true; }
+
+        private void dirty(int from, int to) {
+            dirtyFrom = Math.min(dirtyFrom, Math.max(0, from));
+            dirtyTo = Math.max(dirtyTo, Math.min(board.getRows() - 1, to));
+        }
+
+        // The frame for everything that changed since the last one, or null when nothing did or there is no
+        // falling piece to show: before the first start, after a game over, and between a line clear and the
+        // next spawn. Changes made meanwhile go out with the next frame. The returned array is the caller's to keep.
+        byte[] next() {
+            Tetromino piece = board.getCurrentPiece();
+            if (!board.isStarted() || piece == null || piece.getType() == TetrisBoard.Tetrominoes.NoShape) return null;
+            int shape = piece.getType().ordinal(), rotation = piece.rotation();
+            int x = board.getCurX(), y = board.getCurY(), score = board.getScore(), pieces = board.getPieceCount();
+            // A restarted board has fewer pieces than before: its grid was wiped without any event.
+            if (pieces < lastPieces || ++sinceKeyframe >= keyframeInterval) keyframeDue = true;
+            out.clear();
+            out.position(HEADER_BYTES);
+            int type;
+            if (keyframeDue) {
+                type = KEYFRAME;
+                out.put((byte) board.getCols()).put((byte) board.getRows()).putInt(score);
+                putPiece(shape, rotation, x, y);
+                for (int row = 0; row < board.getRows(); row++) putRow(row);
+                keyframeDue = false;
+                sinceKeyframe = 0;
+            } else {
+                boolean pieceChanged = shape != lastShape || rotation != lastRotation || x != lastX || y != lastY;
+                boolean scoreChanged = score != lastScore;
+                boolean rowsChanged = dirtyTo >= dirtyFrom;
+                if (!pieceChanged && !scoreChanged && !rowsChanged) {
+                    lastPieces = pieces;
+                    return null;
+                }
+                type = DELTA;
+                out.put((byte) ((pieceChanged ? PIECE : 0) | (scoreChanged ? SCORE : 0) | (rowsChanged ? ROWS : 0)));
+                if (pieceChanged) putPiece(shape, rotation, x, y);
+                if (scoreChanged) out.putInt(score);
+                if (rowsChanged) {
+                    out.put((byte) (dirtyTo - dirtyFrom + 1));
+                    for (int row = dirtyFrom; row <= dirtyTo; row++) {
+                        out.put((byte) row);
+                        putRow(row);
+                    }
+                }
+            }
+            dirtyFrom = Integer.MAX_VALUE;
+            dirtyTo = -1;
+            lastShape = shape;
+            lastRotation = rotation;
+            lastX = x;
+            lastY = y;
+            lastScore = score;
+            lastPieces = pieces;
+            int length = out.position();
+            out.putShort(0, (short) length).put(2, (byte) type).putInt(3, seq++);
+            return Arrays.copyOf(out.array(), length);
+        }
+
+        private void putPiece(int shape, int rotation, int x, int y) {
+            out.put((byte) shape).put((byte) rotation).putShort((short) x).putShort((short) y);
+        }
+
+        private void putRow(int row) {
+            int cols = board.getCols();
+            for (int x = 0; x < cols; x += 2) {
+                int low = board.shapeAt(x, row).ordinal();
+                int high = x + 1 < cols ? board.shapeAt(x + 1, row).ordinal() : 0;
+                out.put((byte) (low | high << 4));
+            }
+        }
+    }
+
+    // Rebuilds the board a stream describes. Until the first keyframe, and after any gap in seq, it waits for
+    // a keyframe and ignores deltas.
+    static final class Decoder {
+        private int cols, rows;
+        private byte[] cells = new byte[0];
+        private int shape, rotation, x, y, score;
+        private int expected;
+        private boolean synced;
+        private long frames, gaps;
+
+        // Applies the frame starting at b's position and advances past it. False if it was ignored.
+        boolean accept(ByteBuffer b) {
+            int start = b.position(), length = frameLength(b, start);
+            int type = b.get(start + 2), seq = b.getInt(start + 3);
+            b.position(start + HEADER_BYTES);
+            try {
+                if (type == KEYFRAME) {
+                    cols = b.get() & 0xFF;
+                    rows = b.get() & 0xFF;
+                    if (cells.length != cols * rows) cells = new byte[cols * rows];
+                    score = b.getInt();
+                    getPiece(b);
+                    for (int row = 0; row < rows; row++) getRow(b, row);
+                    if (synced && seq != expected) gaps++;
+                    synced = true;
+                } else if (synced && seq == expected) {
+                    int flags = b.get();
+                    if ((flags & PIECE) != 0) getPiece(b);
+                    if ((flags & SCORE) != 0) score = b.getInt();
+                    if ((flags & ROWS) != 0) {
+                        for (int n = b.get() & 0xFF; n > 0; n--) getRow(b, b.get() & 0xFF);
+                    }
+                } else {
+                    if (synced) gaps++;
+                    synced = false;
+                    return false;
+                }
+                expected = seq + 1;
+                frames++;
+                return true;
+            } finally {
+                b.position(start + length);
+            }
+        }
+
+        private void getPiece(ByteBuffer b) {
+            shape = b.get();
+            rotation = b.get();
+            x = b.getShort();
+            y = b.getShort();
+        }
+
+        private void getRow(ByteBuffer b, int row) {
+            for (int col = 0; col < cols; col += 2) {
+                int packed = b.get();
+                cells[row * cols + col] = (byte) (packed & 0xF);
+                if (col + 1 < cols) cells[row * cols + col + 1] = (byte) (packed >> 4 & 0xF);
+            }
+        }
+
+        boolean isSynced() { return synced; }
+        int getCols() { return cols; }
+        int getRows() { return rows; }
+        int getScore() { return score; }
+        int getCurX() { return x; }
+        int getCurY() { return y; }
+        int getRotation() { return rotation; }
+        TetrisBoard.Tetrominoes getShape() { return TetrisBoard.Tetrominoes.values()[shape]; }
+        TetrisBoard.Tetrominoes shapeAt(int col, int row) { return TetrisBoard.Tetrominoes.values()[cells[row * cols + col]]; }
+        long getFrames() { return frames; }
+        long getGaps() { return gaps; }
+
+        // The stack top row first, with the falling piece drawn in.
+        @Override
+        public String toString() {
+            char[][] grid = new char[rows][cols];
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < cols; col++) grid[row][col] = cells[row * cols + col] == 0 ? '.' : '#';
+            }
+            Tetromino piece = TetrominoFactory.get(getShape(), rotation);
+            if (getShape() != TetrisBoard.Tetrominoes.NoShape) {
+                for (int i = 0; i < 4; i++) {
+                    int px = x + piece.x(i), py = y - piece.y(i);
+                    if (px >= 0 && px < cols && py >= 0 && py < rows) grid[py][px] = '@';
+                }
+            }
+            StringBuilder sb = new StringBuilder();
+            for (int row = rows - 1; row >= 0; row--) sb.append(grid[row]).append('\n');
+            return sb.append("score ").append(score).toString();
+        }
+    }
+}
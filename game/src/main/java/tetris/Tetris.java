@@ -0,0 +1,1051 @@
+package tetris;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.Random;
+
+public class Tetris extends JFrame {
+    private static final Color BORDER_COLOR = Color.decode("#D33058");
+    private static final Color HEADER_COLOR = Color.decode("#FFC0CB");
+    private static final Color BODY_COLOR = Color.decode("#FAEBD7");
+
+    public static class StandardBoardRenderer implements BoardRenderer {
+        private static final int COLS = 12;
+        private static final int ROWS = 20;
+        private static final Color GRID_COLOR = new Color(210, 200, 190);
+        private static final Color[] COLORS = {
+            new Color(0,0,0), new Color(204,102,102),
+            new Color(102,204,102), new Color(102,102,204),
+            new Color(204,204,102), new Color(204,102,204),
+            new Color(102,204,204), new Color(218,170,0)
+        };
+
+        private final int cellSize;
+        private GraphicsConfiguration config;
+        private int cols, rows;
+        // One pre-rendered cell per shape, solid and ghost. Compatible images are managed, so Java2D keeps
+        // copies of them in video memory once they have been drawn a few times.
+        private final BufferedImage[] sprites = new BufferedImage[COLORS.length];
+        private final BufferedImage[] ghosts = new BufferedImage[COLORS.length];
+        private BufferedImage background;
+        // Background plus locked cells, kept between frames so only the rows the board reports dirty are
+        // repainted. A VolatileImage on screen; a BufferedImage headless or when drawing into an image.
+        private Image stack;
+        private Graphics2D stackGraphics;
+        private TetrisBoard drawn;
+        // The drawn board's row version when its stack was last brought up to date.
+        private long drawnVersion;
+        private final Rectangle damage = new Rectangle();
+        // Cells covered by the falling piece and its ghost at the last render, in screen rows; empty when x0 > x1.
+        private int pieceX0, pieceX1 = -1, pieceRow0, pieceRow1;
+
+        public StandardBoardRenderer() {
+            this(24);
+        }
+
+        public StandardBoardRenderer(int cellSize) {
+            if (cellSize < 4) throw new IllegalArgumentException("cellSize must be at least 4: " + cellSize);
+            this.cellSize = cellSize;
+        }
+
+        public int getCellSize() { return cellSize; }
+
+        static Color color(TetrisBoard.Tetrominoes shape) { return COLORS[shape.ordinal()]; }
+
+        // Forces the next render to repaint every row.
+        void invalidate() { drawn = null; }
+
+        @Override
+        public void render(Graphics g, TetrisBoard board) {
+            Graphics2D g2 = (Graphics2D) g;
+            prepare(g2.getDeviceConfiguration(), board == null ? COLS : board.getCols(), board == null ? ROWS : board.getRows());
+            pieceX1 = -1;
+            if (board == null) {
+                g2.drawImage(background, 0, 0, null);
+                drawn = null;
+                return;
+            }
+
+            boolean full = board != drawn;
+            if (stack instanceof VolatileImage) {
+                int status = ((VolatileImage) stack).validate(config);
+                if (status == VolatileImage.IMAGE_INCOMPATIBLE) createStack();
+                if (status != VolatileImage.IMAGE_OK) full = true;
+            }
+            int from = full ? 0 : board.changedFrom(drawnVersion);
+            int to = full ? rows - 1 : Math.min(rows - 1, board.changedTo(drawnVersion));
+            for (int y = from; y <= to; y++) paintRow(board, y);
+            drawn = board;
+            drawnVersion = board.getRowVersion();
+            g2.drawImage(stack, 0, 0, null);
+            if (stack instanceof VolatileImage && ((VolatileImage) stack).contentsLost()) drawn = null;
+
+            Tetromino curPiece = board.getCurrentPiece();
+            if (curPiece == null || curPiece.getType() == TetrisBoard.Tetrominoes.NoShape) return;
+            int curX = board.getCurX(), curY = board.getCurY(), ghostY = board.ghostY();
+            int shape = curPiece.getType().ordinal();
+            if (ghostY != curY) {
+                for (int i = 0; i < 4; i++) {
+                    int y = ghostY - curPiece.y(i);
+                    g2.drawImage(ghosts[shape], (curX + curPiece.x(i)) * cellSize, (rows - y - 1) * cellSize, null);
+                }
+            }
+            for (int i = 0; i < 4; i++) {
+                int y = curY - curPiece.y(i);
+                g2.drawImage(sprites[shape], (curX + curPiece.x(i)) * cellSize, (rows - y - 1) * cellSize, null);
+            }
+            pieceX0 = curX + curPiece.minX();
+            pieceX1 = curX + curPiece.maxX();
+            pieceRow0 = rows - 1 - (curY - curPiece.minY());
+            pieceRow1 = rows - 1 - (ghostY - curPiece.maxY());
+        }
+
+        // What has to be repainted for the next render: rows the board changed, plus where the piece and its
+        // ghost were and are now. Null means everything, as for a board this renderer has not drawn yet. The
+        // rectangle is this renderer's own and is overwritten by the next call.
+        @Override
+        public Rectangle damage(TetrisBoard board) {
+            if (board == null || board != drawn) return null;
+            int x0 = cols, x1 = -1, row0 = rows, row1 = -1;
+            int from = board.changedFrom(drawnVersion), to = board.changedTo(drawnVersion);
+            if (from <= to) {
+                x0 = 0;
+                x1 = cols - 1;
+                row0 = Math.max(0, rows - 1 - to);
+                row1 = Math.min(rows - 1, rows - 1 - from);
+            }
+            if (pieceX0 <= pieceX1) {
+                x0 = Math.min(x0, pieceX0);
+                x1 = Math.max(x1, pieceX1);
+                row0 = Math.min(row0, pieceRow0);
+                row1 = Math.max(row1, pieceRow1);
+            }
+            Tetromino piece = board.getCurrentPiece();
+            if (piece != null && piece.getType() != TetrisBoard.Tetrominoes.NoShape) {
+                x0 = Math.min(x0, board.getCurX() + piece.minX());
+                x1 = Math.max(x1, board.getCurX() + piece.maxX());
+                row0 = Math.min(row0, rows - 1 - (board.getCurY() - piece.minY()));
+                row1 = Math.max(row1, rows - 1 - (board.ghostY() - piece.maxY()));
+            }
+            if (x0 > x1) damage.setBounds(0, 0, 0, 0);
+            else damage.setBounds(x0 * cellSize, row0 * cellSize, (x1 - x0 + 1) * cellSize, (row1 - row0 + 1) * cellSize);
+            return damage;
+        }
+
+        private void paintRow(TetrisBoard board, int y) {
+            int top = (rows - y - 1) * cellSize;
+            int width = cols * cellSize;
+            stackGraphics.drawImage(background, 0, top, width, top + cellSize, 0, top, width, top + cellSize, null);
+            for (long bits = board.rowBits(y); bits != 0; bits &= bits - 1) {
+                int x = Long.numberOfTrailingZeros(bits);
+                stackGraphics.drawImage(sprites[board.shapeAt(x, y).ordinal()], x * cellSize, top, null);
+            }
+        }
+
+        // Rebuilds sprites and layers when the target device or the board size changes.
+        private void prepare(GraphicsConfiguration gc, int cols, int rows) {
+            if (gc == config && cols == this.cols && rows == this.rows) return;
+            this.config = gc;
+            this.cols = cols;
+            this.rows = rows;
+            for (int i = 0; i < COLORS.length; i++) {
+                sprites[i] = config.createCompatibleImage(cellSize, cellSize, Transparency.OPAQUE);
+                Graphics2D sg = sprites[i].createGraphics();
+                drawSquare(sg, 0, 0, COLORS[i], cellSize);
+                sg.dispose();
+                ghosts[i] = config.createCompatibleImage(cellSize, cellSize, Transparency.TRANSLUCENT);
+                sg = ghosts[i].createGraphics();
+                drawGhost(sg, 0, 0, COLORS[i], cellSize);
+                sg.dispose();
+            }
+            int width = cols * cellSize, height = rows * cellSize;
+            background = config.createCompatibleImage(width, height, Transparency.OPAQUE);
+            Graphics2D bg = background.createGraphics();
+            bg.setColor(BODY_COLOR);
+            bg.fillRect(0, 0, width, height);
+            bg.setColor(GRID_COLOR);
+            for (int x = 0; x <= width; x += cellSize) bg.drawLine(x, 0, x, height);
+            for (int y = 0; y <= height; y += cellSize) bg.drawLine(0, y, width, y);
+            bg.dispose();
+            createStack();
+            drawn = null;
+        }
+
+        private void createStack() {
+            if (stackGraphics != null) stackGraphics.dispose();
+            int width = cols * cellSize, height = rows * cellSize;
+            boolean screen = !GraphicsEnvironment.isHeadless() && config.getDevice().getType() != GraphicsDevice.TYPE_IMAGE_BUFFER;
+            if (screen) {
+                VolatileImage image = config.createCompatibleVolatileImage(width, height, Transparency.OPAQUE);
+                image.validate(config);
+                stack = image;
+                stackGraphics = image.createGraphics();
+            } else {
+                BufferedImage image = config.createCompatibleImage(width, height, Transparency.OPAQUE);
+                stack = image;
+                stackGraphics = image.createGraphics();
+            }
+            drawn = null;
+        }
+
+        // Landing preview: a faint fill with an outline in the piece colour.
+        private static void drawGhost(Graphics g, int x, int y, Color color, int CELL) {
+            g.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), 60));
+            g.fillRect(x + 1, y + 1, CELL - 2, CELL - 2);
+            g.setColor(color);
+            g.drawRect(x + 1, y + 1, CELL - 3, CELL - 3);
+        }
+
+        private static void drawSquare(Graphics g, int x, int y, Color color, int CELL) {
+            g.setColor(color);
+            g.fillRect(x + 1, y + 1, CELL - 2, CELL - 2);
+            g.setColor(color.brighter());
+            g.drawLine(x, y + CELL - 1, x, y);
+            g.drawLine(x, y, x + CELL - 1, y);
+            g.setColor(color.darker());
+            g.drawLine(x + 1, y + CELL - 1, x + CELL - 1, y + CELL - 1);
+            g.drawLine(x + CELL - 1, y + CELL - 1, x + CELL - 1, y + 1);
+        }
+    }
+
+    public Tetris() {
+        setTitle("Tetris – Pastel Edition");
+        setDefaultCloseOperation(EXIT_ON_CLOSE);
+        setSize(560, 680);
+        setLocationRelativeTo(null);
+        setResizable(false);
+
+        JPanel root = new JPanel(new BorderLayout());
+        root.setBackground(BODY_COLOR);
+        root.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        BoardRenderer renderer = new StandardBoardRenderer();
+        GamePanel gamePanel = new GamePanel(renderer);
+
+        RoundedPanel side = new RoundedPanel(18, BODY_COLOR, BORDER_COLOR, 2, null);
+        side.setPreferredSize(new Dimension(200, 600));
+        side.setLayout(null);
+
+        JLabel title = new JLabel("opatetris", SwingConstants.CENTER);
+        title.setFont(new Font("SansSerif", Font.BOLD, 28));
+        title.setForeground(BORDER_COLOR);
+        title.setBounds(10, 10, 180, 40);
+        side.add(title);
+
+        JLabel nextLabel = new JLabel("next");
+        nextLabel.setFont(new Font("SansSerif", Font.PLAIN, 14));
+        nextLabel.setForeground(BORDER_COLOR);
+        nextLabel.setBounds(10, 60, 80, 20);
+        side.add(nextLabel);
+
+        JPanel previewBox = new JPanel() {
+            protected void paintComponent(Graphics g) {
+                super.paintComponent(g);
+                Tetromino next = gamePanel.getNextPiece();
+                if (next != null && next.getType() != TetrisBoard.Tetrominoes.NoShape) {
+                    int CELL = 18;
+                    int offsetX = (getWidth() - CELL*4)/2;
+                    int offsetY = (getHeight() - CELL*4)/2;
+                    
+                    g.setColor(StandardBoardRenderer.color(next.getType()));
+                    for (int i = 0; i < 4; i++) {
+                        int x = 1 + next.x(i);
+                        int y = 1 - next.y(i);
+                        g.fillRect(offsetX + x*CELL + 1, offsetY + y*CELL + 1, CELL-2, CELL-2);
+                    }
+                }
+            }
+        };
+        previewBox.setBackground(BODY_COLOR);
+        previewBox.setBorder(BorderFactory.createLineBorder(BORDER_COLOR, 2));
+        previewBox.setBounds(25, 85, 150, 120);
+        side.add(previewBox);
+
+        JLabel scoreLabel = new JLabel("score");
+        scoreLabel.setFont(new Font("SansSerif", Font.PLAIN, 14));
+        scoreLabel.setForeground(BORDER_COLOR);
+        scoreLabel.setBounds(10, 220, 80, 20);
+        side.add(scoreLabel);
+
+        JLabel scoreValue = new JLabel("0", SwingConstants.CENTER);
+        scoreValue.setFont(new Font("SansSerif", Font.BOLD, 22));
+        scoreValue.setForeground(BORDER_COLOR);
+        scoreValue.setOpaque(true);
+        scoreValue.setBackground(Color.WHITE);
+        scoreValue.setBorder(BorderFactory.createLineBorder(BORDER_COLOR, 2));
+        scoreValue.setBounds(25, 245, 150, 45);
+        side.add(scoreValue);
+
+        JButton startBtn = pastelButton("Start");
+        JButton pauseBtn = pastelButton("Pause");
+        JButton restartBtn = pastelButton("Restart");
+        JButton quitBtn = pastelButton("Quit");
+        JButton autoBtn = pastelButton("Autoplay");
+
+        startBtn.setBounds(40, 320, 120, 40);
+        pauseBtn.setBounds(40, 370, 120, 40);
+        restartBtn.setBounds(40, 420, 120, 40);
+        quitBtn.setBounds(40, 470, 120, 40);
+        autoBtn.setBounds(40, 520, 120, 40);
+
+        side.add(startBtn);
+        side.add(pauseBtn);
+        side.add(restartBtn);
+        side.add(quitBtn);
+        side.add(autoBtn);
+
+        JLabel hint = new JLabel("Use arrow keys to move/rotate", SwingConstants.CENTER);
+        hint.setFont(new Font("SansSerif", Font.PLAIN, 12));
+        hint.setForeground(new Color(211, 48, 88));
+        hint.setBounds(10, 565, 180, 20);
+        side.add(hint);
+
+        JLabel frameStats = new JLabel(" ", SwingConstants.CENTER);
+        frameStats.setFont(new Font("SansSerif", Font.PLAIN, 10));
+        frameStats.setForeground(new Color(211, 48, 88));
+        frameStats.setBounds(10, 583, 180, 14);
+        side.add(frameStats);
+
+        startBtn.addActionListener(e -> {
+            gamePanel.ensurePlayerName(this);
+            gamePanel.startGame();
+            gamePanel.requestFocusInWindow();
+        });
+
+        pauseBtn.addActionListener(e -> {
+            if (gamePanel.isPaused()) {
+                gamePanel.resumeGame();
+                pauseBtn.setText("Pause");
+            } else {
+                gamePanel.pauseGame();
+                pauseBtn.setText("Resume");
+            }
+            gamePanel.requestFocusInWindow();
+        });
+
+        restartBtn.addActionListener(e -> {
+            gamePanel.restartGame();
+            gamePanel.requestFocusInWindow();
+            pauseBtn.setText("Pause");
+        });
+
+        quitBtn.addActionListener(e -> showQuitDialog());
+
+        autoBtn.addActionListener(e -> {
+            autoBtn.setText(gamePanel.toggleAutoplay() ? "Manual" : "Autoplay");
+            gamePanel.requestFocusInWindow();
+        });
+
+        gamePanel.setScoreListener(score -> SwingUtilities.invokeLater(() -> scoreValue.setText(String.valueOf(score))));
+
+        gamePanel.setPreviewRepaintListener(() -> SwingUtilities.invokeLater(previewBox::repaint));
+
+        gamePanel.setStatsListener(stats -> SwingUtilities.invokeLater(() -> frameStats.setText(stats.toString())));
+
+        JPanel leftWrap = new JPanel(new GridBagLayout()); 
+        leftWrap.setOpaque(false);
+        leftWrap.add(gamePanel);
+        root.add(leftWrap, BorderLayout.CENTER);
+        root.add(side, BorderLayout.EAST);
+
+        add(root);
+    }
+
+    private void showQuitDialog() {
+        JDialog dialog = new JDialog(this, "Confirm", true);
+        dialog.setSize(300, 150);
+        dialog.setLocationRelativeTo(this);
+        dialog.setUndecorated(true);
+        dialog.setLayout(null);
+
+        Color red = Color.decode("#D33058");
+        Color pink = Color.decode("#F7DAD9");
+        Color beige = Color.decode("#FAEBD7");
+
+        JPanel bg = new JPanel(null);
+        bg.setBackground(beige);
+        bg.setBorder(BorderFactory.createLineBorder(red, 3));
+        bg.setBounds(0, 0, 300, 150);
+        dialog.add(bg);
+
+        JLabel title = new JLabel("Quit game?", SwingConstants.CENTER);
+        title.setFont(new Font("SansSerif", Font.BOLD, 20));
+        title.setForeground(red);
+        title.setBounds(20, 20, 260, 30);
+        bg.add(title);
+
+        JButton yes = new JButton("Yes");
+        yes.setFont(new Font("SansSerif", Font.BOLD, 16));
+        yes.setForeground(red);
+        yes.setBackground(pink);
+        yes.setBorder(BorderFactory.createLineBorder(red, 2));
+        yes.setFocusPainted(false);
+        yes.setBounds(40, 80, 90, 40);
+        yes.addActionListener(ev -> System.exit(0));
+        bg.add(yes);
+
+        JButton no = new JButton("No");
+        no.setFont(new Font("SansSerif", Font.BOLD, 16));
+        no.setForeground(red);
+        no.setBackground(pink);
+        no.setBorder(BorderFactory.createLineBorder(red, 2));
+        no.setFocusPainted(false);
+        no.setBounds(170, 80, 90, 40);
+        no.addActionListener(ev -> dialog.dispose());
+        bg.add(no);
+
+        dialog.setVisible(true);
+    }
+
+    private JButton pastelButton(String text) {
+        JButton b = new JButton(text);
+        b.setFont(new Font("SansSerif", Font.BOLD, 14));
+        b.setBackground(HEADER_COLOR);
+        b.setForeground(BORDER_COLOR);
+        b.setFocusPainted(false);
+        b.setBorder(BorderFactory.createLineBorder(BORDER_COLOR, 2));
+        return b;
+    }
+
+    class RoundedPanel extends JPanel {
+        private int radius;
+        private Color bgColor;
+        private Color borderColor;
+        private int borderThickness;
+
+        public RoundedPanel(int radius, Color bgColor, Color borderColor, int borderThickness, LayoutManager layout) {
+            super(layout);
+            this.radius = radius;
+            this.bgColor = bgColor;
+            this.borderColor = borderColor;
+            this.borderThickness = borderThickness;
+            setOpaque(false);
+        }
+
+        protected void paintComponent(Graphics g) {
+            Graphics2D g2 = (Graphics2D) g.create();
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+            int w = getWidth();
+            int h = getHeight();
+
+            g2.setColor(bgColor);
+            g2.fill(new RoundRectangle2D.Double(0, 0, w, h, radius, radius));
+
+            if (borderThickness > 0) {
+                g2.setColor(borderColor);
+                g2.setStroke(new BasicStroke(borderThickness));
+                g2.draw(new RoundRectangle2D.Double(
+                        borderThickness / 2.0,
+                        borderThickness / 2.0,
+                        w - borderThickness,
+                        h - borderThickness,
+                        radius, radius
+                ));
+            }
+            g2.dispose();
+            super.paintComponent(g);
+        }
+    }
+
+    private class GamePanel extends RoundedPanel {
+        private final int COLS = 12;             
+        private final int ROWS = 20;             
+        private final int CELL_SIZE = 24;       
+        private final int PANEL_W = COLS * CELL_SIZE;
+        private final int PANEL_H = ROWS * CELL_SIZE;
+
+        // The simulation runs at a fixed 60 steps a second. Gravity is in rows per step (G): the default 1/24
+        // drops a row every 400 ms, and -Dtetris.gravity=20 gives 20G.
+        private static final int STEPS_PER_SECOND = 60;
+        private final double gravity = Math.min(ROWS, Double.parseDouble(System.getProperty("tetris.gravity", String.valueOf(1.0 / 24))));
+        // Held left/right moves once, waits the delayed auto-shift, then repeats every auto-repeat interval
+        // (0 slides to the wall). Both are given in milliseconds and applied in whole steps.
+        private final int dasSteps = millisToSteps(Integer.getInteger("tetris.das", 167));
+        private final int arrSteps = millisToSteps(Integer.getInteger("tetris.arr", 33));
+        // With -Dtetris.latency=true, the time from each key event to the flip of the first frame showing it is
+        // reported on stdout once a second.
+        private final boolean measureLatency = Boolean.getBoolean("tetris.latency");
+        // With -Dtetris.spectators=<port>, every game is streamed to spectators on that port after each step.
+        private final SpectatorServer spectators = openSpectators(Integer.getInteger("tetris.spectators", -1));
+        private final SpectatorStream.Encoder spectatorFeed = new SpectatorStream.Encoder(STEPS_PER_SECOND);
+
+        // The board, recorder and bot belong to the loop thread, which steps and renders the game. The EDT
+        // only queues commands for it and reads the volatile fields it publishes.
+        private final GameLoop loop;
+        private final java.util.concurrent.ConcurrentLinkedQueue<Runnable> commands = new java.util.concurrent.ConcurrentLinkedQueue<>();
+        private final InputQueue keys = new InputQueue(256);
+        private TetrisBoard board;
+        private double fall;
+        private volatile AutoPlayer autoPlayer;
+        private Replay.Recorder recorder;
+        private long gameStartNanos;
+        private volatile boolean isStarted, isPaused;
+        private volatile Tetromino nextPiece = TetrominoFactory.createNoShape();
+
+        // Key state, loop thread only. held has a bit per Replay.Input; shift is the direction auto-shift repeats.
+        private static final long AUTO_REPEAT_GAP_NANOS = 2_000_000L;
+        private static final Replay.Input[] INPUTS = Replay.Input.values();
+        private int held;
+        private final long[] releasedAt = new long[INPUTS.length];
+        private Replay.Input shift;
+        private int dasCharge, arrCharge;
+        private boolean softDropPressed;
+
+        // Key event times applied since the last frame, and the latency histogram (1 ms buckets) for the current window.
+        private final long[] unshown = new long[64];
+        private int unshownCount;
+        private final int[] latencyHistogram = new int[100];
+        private int latencyCount;
+        private double latencySum, latencyMax;
+        private String playerName = null;
+        private final Leaderboard leaderboard = new Leaderboard(System.getProperty("user.home") + java.io.File.separator + "tetris-leaderboard.txt");
+
+        private final BoardRenderer renderer;
+        private final Canvas canvas;
+        // Set by board events and by Swing exposing the canvas; frames are only drawn when it is set.
+        private volatile boolean frameDirty = true;
+        // Set when Swing exposes the canvas: the next frame is drawn whole rather than clipped to the board's damage.
+        private volatile boolean exposed = true;
+        private boolean gameOver;
+
+        // Board events drive the side panel, game over and frame skipping, instead of polling every step.
+        private final BoardListener events = new BoardListener() {
+            public void pieceSpawned(TetrisBoard b, Tetromino piece) {
+                publishPreview();
+                frameDirty = true;
+            }
+
+            public void pieceMoved(TetrisBoard b, int fromX, int fromY) { frameDirty = true; }
+            public void pieceRotated(TetrisBoard b, Tetromino from) { frameDirty = true; }
+            public void pieceLocked(TetrisBoard b, Tetromino piece, int x, int y) { frameDirty = true; }
+
+            public void scoreChanged(TetrisBoard b, int score) {
+                if (scoreListener != null) scoreListener.accept(score);
+            }
+
+            public void gameOver(TetrisBoard b) {
+                gameOver = true;
+                frameDirty = true;
+            }
+        };
+
+        private java.util.function.IntConsumer scoreListener;
+        private Runnable previewRepaintListener;
+        private volatile java.util.function.Consumer<GameLoop.FrameStats> statsListener;
+
+        public GamePanel(BoardRenderer renderer) {
+            super(18, BODY_COLOR, BORDER_COLOR, 3, null);
+            this.renderer = renderer;
+            if (!(gravity > 0)) throw new IllegalArgumentException("tetris.gravity must be positive: " + gravity);
+            this.loop = new GameLoop(STEPS_PER_SECOND, this::stepAndBroadcast, this::renderFrame, stats -> {
+                java.util.function.Consumer<GameLoop.FrameStats> l = statsListener;
+                if (l != null) l.accept(stats);
+                if (measureLatency) reportLatency();
+            });
+            loop.setFailureListener(e -> SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                    "The game stopped after an internal error:\n" + e, "Tetris", JOptionPane.ERROR_MESSAGE)));
+            java.util.Arrays.fill(releasedAt, Long.MIN_VALUE);
+            
+            setPreferredSize(new Dimension(PANEL_W + 8, PANEL_H + 8)); 
+            setLayout(null);
+
+            // Drawn only by the loop thread, so Swing's own repaints are ignored.
+            canvas = new Canvas() {
+                public void addNotify() {
+                    super.addNotify();
+                    createBufferStrategy(2);
+                    loop.start("tetris-loop");
+                }
+
+                public void removeNotify() {
+                    loop.stop();
+                    super.removeNotify();
+                }
+
+                public void paint(Graphics g) { exposed = true; frameDirty = true; }
+                public void update(Graphics g) { exposed = true; frameDirty = true; }
+            };
+            canvas.setBounds(4, 4, PANEL_W, PANEL_H);
+            canvas.setBackground(BODY_COLOR);
+            canvas.setIgnoreRepaint(true);
+            canvas.setFocusable(false);
+            add(canvas);
+
+            setFocusable(true);
+            InputController controller = new InputController();
+            addKeyListener(controller);
+            addFocusListener(controller);
+
+            board = new TetrisBoard(COLS, ROWS);
+            if (spectators != null) spectatorFeed.attach(board);
+        }
+
+        public Tetromino getNextPiece() { return nextPiece; }
+        public boolean isPaused() { return isPaused; }
+
+        public void setScoreListener(java.util.function.IntConsumer listener) { this.scoreListener = listener; }
+        public void setPreviewRepaintListener(Runnable r) { this.previewRepaintListener = r; }
+        public void setStatsListener(java.util.function.Consumer<GameLoop.FrameStats> l) { this.statsListener = l; }
+
+        public boolean toggleAutoplay() {
+            autoPlayer = autoPlayer == null ? new AutoPlayer() : null;
+            return autoPlayer != null;
+        }
+
+        public void startGame() {
+            commands.add(this::beginGame);
+            requestFocusInWindow();
+        }
+
+        public void pauseGame() {
+            if (!isStarted) return;
+            isPaused = true;
+        }
+
+        public void resumeGame() {
+            if (!isStarted) return;
+            isPaused = false;
+        }
+
+        public void restartGame() {
+            commands.add(this::beginGame);
+            requestFocusInWindow();
+        }
+
+        private void beginGame() {
+            newBoard();
+            fall = 0;
+            isStarted = true;
+            isPaused = false;
+            if (scoreListener != null) scoreListener.accept(board.getScore());
+        }
+
+        public void ensurePlayerName(Component parent) {
+            if (playerName != null && !playerName.trim().isEmpty()) return;
+
+            JDialog dialog = new JDialog(Tetris.this, "Player Name", true);
+            dialog.setSize(330, 180);
+            dialog.setLocationRelativeTo(parent);
+            dialog.setUndecorated(true);
+            dialog.setLayout(null);
+
+            Color red = BORDER_COLOR;
+            Color pink = Color.decode("#F7DAD9");
+            Color beige = BODY_COLOR;
+
+            JPanel bg = new JPanel(null);
+            bg.setBackground(beige);
+            bg.setBorder(BorderFactory.createLineBorder(red, 4));
+            bg.setBounds(0, 0, 330, 180);
+            dialog.add(bg);
+
+            JLabel title = new JLabel("Enter Your Name", SwingConstants.CENTER);
+            title.setFont(new Font("SansSerif", Font.BOLD, 20));
+            title.setForeground(red);
+            title.setBounds(20, 18, 290, 28);
+            bg.add(title);
+
+            JTextField input = new JTextField("Player");
+            input.setFont(new Font("SansSerif", Font.PLAIN, 16));
+            input.setBackground(Color.WHITE);
+            input.setForeground(Color.DARK_GRAY);
+            input.setBorder(BorderFactory.createLineBorder(red, 2));
+            input.setBounds(30, 60, 270, 32);
+            bg.add(input);
+
+            JButton ok = new JButton("OK");
+            ok.setFont(new Font("SansSerif", Font.BOLD, 16));
+            ok.setForeground(red);
+            ok.setBackground(pink);
+            ok.setBorder(BorderFactory.createLineBorder(red, 2));
+            ok.setFocusPainted(false);
+            ok.setBounds(40, 110, 110, 40);
+            ok.addActionListener(e -> {
+                String name = input.getText();
+                if (name == null || name.trim().isEmpty()) name = "Player";
+                playerName = name.trim();
+                dialog.dispose();
+            });
+            bg.add(ok);
+
+            JButton cancel = new JButton("Cancel");
+            cancel.setFont(new Font("SansSerif", Font.BOLD, 16));
+            cancel.setForeground(red);
+            cancel.setBackground(pink);
+            cancel.setBorder(BorderFactory.createLineBorder(red, 2));
+            cancel.setFocusPainted(false);
+            cancel.setBounds(180, 110, 110, 40);
+            cancel.addActionListener(e -> {
+                if (playerName == null || playerName.trim().isEmpty()) playerName = "Player";
+                dialog.dispose();
+            });
+            bg.add(cancel);
+
+            dialog.setVisible(true);
+        }
+
+        // Each game gets a fresh seeded board so that, with -Dtetris.replays=<dir>, it can be recorded from its seed.
+        private void newBoard() {
+            closeRecorder();
+            long seed = java.util.concurrent.ThreadLocalRandom.current().nextLong();
+            board = new TetrisBoard(COLS, ROWS, seed);
+            board.addListener(events);
+            if (spectators != null) spectatorFeed.attach(board);
+            gameOver = false;
+            board.start();
+            gameStartNanos = System.nanoTime();
+            String dir = System.getProperty("tetris.replays");
+            if (dir == null) return;
+            try {
+                java.nio.file.Path path = java.nio.file.Files.createDirectories(java.nio.file.Paths.get(dir))
+                        .resolve("tetris-" + System.currentTimeMillis() + "-" + Long.toHexString(seed) + ".replay");
+                recorder = Replay.Recorder.create(path, COLS, ROWS, "uniform", seed);
+            } catch (java.io.IOException e) {
+                recorder = null;
+            }
+        }
+
+        private void input(Replay.Input in) {
+            in.apply(board);
+            if (recorder == null) return;
+            try {
+                recorder.record(in, (System.nanoTime() - gameStartNanos) / 1_000_000, board);
+            } catch (java.io.IOException e) {
+                closeRecorder();
+            }
+        }
+
+        private void closeRecorder() {
+            if (recorder == null) return;
+            try {
+                recorder.close();
+            } catch (java.io.IOException ignore) {}
+            recorder = null;
+        }
+
+        private int millisToSteps(int millis) {
+            if (millis < 0) throw new IllegalArgumentException("DAS and ARR must not be negative: " + millis);
+            return (int) Math.round(millis * STEPS_PER_SECOND / 1000.0);
+        }
+
+        private SpectatorServer openSpectators(int port) {
+            if (port < 0) return null;
+            try {
+                SpectatorServer server = new SpectatorServer(port);
+                server.start();
+                return server;
+            } catch (java.io.IOException e) {
+                System.err.println("spectators disabled: " + e);
+                return null;
+            }
+        }
+
+        private void stepAndBroadcast() {
+            step();
+            if (spectators == null) return;
+            byte[] frame = spectatorFeed.next();
+            if (frame != null) spectators.publish(frame);
+        }
+
+        // One fixed step on the loop thread: queued commands and key events first, then auto-shift, the bot and gravity.
+        private void step() {
+            for (Runnable command; (command = commands.poll()) != null; ) command.run();
+            for (int code; (code = keys.poll()) >= 0; ) key(code, keys.lastTime());
+            if (!isStarted) return;
+            if (!isPaused) {
+                autoShift();
+                AutoPlayer bot = autoPlayer;
+                if (bot != null) bot.act(board, this::input);
+                fall += gravity;
+                int pieces = board.getPieceCount();
+                while (fall >= 1 && board.isStarted()) {
+                    fall -= 1;
+                    input(Replay.Input.TICK);
+                    // Leftover gravity is dropped at a spawn, so even at 20G every piece gets a step of its own.
+                    if (board.getPieceCount() != pieces) {
+                        fall = 0;
+                        break;
+                    }
+                }
+            }
+            if (gameOver) {
+                gameOver = false;
+                closeRecorder();
+                isStarted = false;
+                int finalScore = board.getScore();
+                SwingUtilities.invokeLater(() -> showGameOverDialog(finalScore));
+            }
+        }
+
+        // Every press is applied in order, however many arrive within one step. Presses of a key already held are
+        // OS key repeat and ignored, as is the release/press pair some platforms send for it; holding is DAS's job.
+        private void key(int code, long time) {
+            Replay.Input in = INPUTS[code & 0xFF];
+            int bit = 1 << in.ordinal();
+            if ((code & InputQueue.RELEASED) != 0) {
+                held &= ~bit;
+                releasedAt[in.ordinal()] = time;
+                return;
+            }
+            long released = releasedAt[in.ordinal()];
+            boolean repeat = (held & bit) != 0 || (released != Long.MIN_VALUE && time - released < AUTO_REPEAT_GAP_NANOS);
+            held |= bit;
+            boolean horizontal = in == Replay.Input.MOVE_LEFT || in == Replay.Input.MOVE_RIGHT;
+            // A repeat pair split across two steps has already stopped the auto-shift; pick it back up.
+            if (repeat && horizontal && shift == null) shift = in;
+            if (repeat || !isStarted || isPaused) return;
+            if (horizontal) {
+                shift = in;
+                dasCharge = 0;
+                arrCharge = 0;
+            }
+            if (in == Replay.Input.SOFT_DROP) softDropPressed = true;
+            input(in);
+            frameDirty = true;
+            if (measureLatency && unshownCount < unshown.length) unshown[unshownCount++] = time;
+        }
+
+        private void autoShift() {
+            // Soft drop repeats every step while held, from the step after the press.
+            if ((held & 1 << Replay.Input.SOFT_DROP.ordinal()) != 0 && !softDropPressed) input(Replay.Input.SOFT_DROP);
+            softDropPressed = false;
+            if (shift != null && (held & 1 << shift.ordinal()) == 0) {
+                Replay.Input other = shift == Replay.Input.MOVE_LEFT ? Replay.Input.MOVE_RIGHT : Replay.Input.MOVE_LEFT;
+                shift = (held & 1 << other.ordinal()) != 0 ? other : null;
+                dasCharge = 0;
+                arrCharge = 0;
+            }
+            if (shift == null || ++dasCharge < dasSteps) return;
+            if (arrSteps == 0) {
+                int x;
+                do {
+                    x = board.getCurX();
+                    input(shift);
+                } while (board.getCurX() != x);
+            } else if (++arrCharge >= arrSteps) {
+                arrCharge = 0;
+                input(shift);
+            }
+        }
+
+        private void publishPreview() {
+            nextPiece = board.getNextPiece();
+            if (previewRepaintListener != null) previewRepaintListener.run();
+        }
+
+        // Active rendering: the loop thread draws into the back buffer and flips it, rather than waiting for a
+        // coalesced Swing repaint. When the back buffer still holds the last frame, only the renderer's damage
+        // (the board's dirty rows and the piece's old and new cells) is redrawn into it.
+        private void renderFrame() {
+            BufferStrategy strategy = canvas.getBufferStrategy();
+            if (strategy == null || renderer == null || !frameDirty) return;
+            frameDirty = false;
+            long start = Metrics.ENABLED ? System.nanoTime() : 0;
+            BufferCapabilities caps = strategy.getCapabilities();
+            boolean kept = !caps.isPageFlipping() || caps.getFlipContents() == BufferCapabilities.FlipContents.COPIED;
+            Rectangle damage = exposed || !kept ? null : renderer.damage(board);
+            exposed = false;
+            boolean restored, lost;
+            do {
+                do {
+                    Graphics g = strategy.getDrawGraphics();
+                    try {
+                        if (damage != null) g.clipRect(damage.x, damage.y, damage.width, damage.height);
+                        renderer.render(g, board);
+                    } finally {
+                        g.dispose();
+                    }
+                    restored = strategy.contentsRestored();
+                    if (restored) damage = null;
+                } while (restored);
+                strategy.show();
+                lost = strategy.contentsLost();
+                if (lost) damage = null;
+            } while (lost);
+            Toolkit.getDefaultToolkit().sync();
+            if (Metrics.ENABLED) Metrics.FRAME.record(System.nanoTime() - start);
+            if (unshownCount > 0) {
+                long now = System.nanoTime();
+                for (int i = 0; i < unshownCount; i++) {
+                    double ms = (now - unshown[i]) / 1e6;
+                    latencyHistogram[Math.min(latencyHistogram.length - 1, (int) ms)]++;
+                    latencyCount++;
+                    latencySum += ms;
+                    latencyMax = Math.max(latencyMax, ms);
+                }
+                unshownCount = 0;
+            }
+        }
+
+        private void reportLatency() {
+            if (latencyCount > 0) {
+                System.out.println(String.format(java.util.Locale.ROOT,
+                        "input-to-photon n=%d mean=%.1f ms p50=%d ms p99=%d ms max=%.1f ms dropped=%d",
+                        latencyCount, latencySum / latencyCount, latencyPercentile(0.50), latencyPercentile(0.99),
+                        latencyMax, keys.dropped()));
+            }
+            java.util.Arrays.fill(latencyHistogram, 0);
+            latencyCount = 0;
+            latencySum = latencyMax = 0;
+        }
+
+        // Upper edge of the 1 ms bucket holding the given fraction of samples.
+        private int latencyPercentile(double fraction) {
+            int rank = (int) Math.ceil(fraction * latencyCount), seen = 0;
+            for (int i = 0; i < latencyHistogram.length; i++) {
+                seen += latencyHistogram[i];
+                if (seen >= rank) return i + 1;
+            }
+            return latencyHistogram.length;
+        }
+
+        
+        private void showGameOverDialog(int finalScore) {
+             JDialog dialog = new JDialog(Tetris.this, "Game Over", true);
+            dialog.setSize(330, 220);
+            dialog.setLocationRelativeTo(this);
+            dialog.setUndecorated(true); 
+            dialog.setLayout(null);
+
+            Color red = Color.decode("#D33058");
+            Color pink = Color.decode("#F7DAD9");
+            Color beige = Color.decode("#FAEBD7");
+
+            JPanel bg = new JPanel(null);
+            bg.setBackground(beige);
+            bg.setBorder(BorderFactory.createLineBorder(red, 4));
+            bg.setBounds(0, 0, 330, 220);
+            dialog.add(bg);
+
+            JLabel title = new JLabel("GAME OVER", SwingConstants.CENTER);
+            title.setFont(new Font("SansSerif", Font.BOLD, 28));
+            title.setForeground(red);
+            title.setBounds(20, 20, 290, 40);
+            bg.add(title);
+
+            JLabel score = new JLabel("Score: " + finalScore, SwingConstants.CENTER);
+            score.setFont(new Font("SansSerif", Font.PLAIN, 18));
+            score.setForeground(red.darker());
+            score.setBounds(20, 65, 290, 30);
+            bg.add(score);
+
+            JButton restart = new JButton("Restart");
+            restart.setFont(new Font("SansSerif", Font.BOLD, 16));
+            restart.setForeground(red);
+            restart.setBackground(pink);
+            restart.setBorder(BorderFactory.createLineBorder(red, 2));
+            restart.setFocusPainted(false);
+            restart.setBounds(40, 180, 110, 40);
+            restart.addActionListener(e -> {
+                dialog.dispose();
+                restartGame();
+            });
+            bg.add(restart);
+
+            JButton quit = new JButton("Quit");
+            quit.setFont(new Font("SansSerif", Font.BOLD, 16));
+            quit.setForeground(red);
+            quit.setBackground(pink);
+            quit.setBorder(BorderFactory.createLineBorder(red, 2));
+            quit.setFocusPainted(false);
+            quit.setBounds(180, 180, 110, 40);
+            quit.addActionListener(e -> System.exit(0));
+            bg.add(quit);
+
+            JLabel leaderboardLabel = new JLabel("<html>Top 5:<br/>loading...</html>", SwingConstants.CENTER);
+            leaderboardLabel.setFont(new Font("SansSerif", Font.PLAIN, 12));
+            leaderboardLabel.setForeground(red.darker());
+            int lines = 6; // heading plus five entries, reserved so the layout holds still when the scores arrive
+            int labelHeight = 18 * lines + 8; 
+            leaderboardLabel.setBounds(20, 100, 290, labelHeight);
+            bg.add(leaderboardLabel);
+
+            int buttonsY = 100 + labelHeight + 10;
+            restart.setBounds(40, buttonsY, 110, 40);
+            quit.setBounds(180, buttonsY, 110, 40);
+            int neededHeight = buttonsY + 40 + 20;
+            if (neededHeight > dialog.getHeight()) {
+                dialog.setSize(dialog.getWidth(), neededHeight);
+                bg.setBounds(0, 0, dialog.getWidth(), neededHeight);
+            }
+
+            String name = playerName;
+            java.util.concurrent.CompletableFuture<Void> saved =
+                    name != null ? leaderboard.submit(name, finalScore) : leaderboard.whenReady();
+            saved.handle((v, ex) -> null).thenRun(() -> {
+                java.util.List<Leaderboard.Entry> top = leaderboard.top(5);
+                int rank = name == null ? -1 : leaderboard.rankOf(name);
+                int size = leaderboard.size();
+                SwingUtilities.invokeLater(() -> {
+                    if (rank > 0) score.setText("Score: " + finalScore + "   Rank: #" + rank + " of " + size);
+                    leaderboardLabel.setText(topHtml(top));
+                });
+            });
+
+            dialog.setVisible(true);
+        }
+
+        private String topHtml(java.util.List<Leaderboard.Entry> top) {
+            StringBuilder sb = new StringBuilder("<html>Top 5:<br/>");
+            for (int i = 0; i < top.size(); i++) {
+                Leaderboard.Entry en = top.get(i);
+                sb.append(i + 1).append(". ").append(en.name).append(" (").append(en.score).append(")");
+                if (i < top.size() - 1) sb.append("<br/>");
+            }
+            sb.append("</html>");
+            return sb.toString();
+        }
+
+        // Runs on the EDT and only timestamps key events into the queue; the loop thread applies them on its
+        // next step, at most one step (about 17 ms) later.
+        private class InputController extends KeyAdapter implements FocusListener {
+            public void keyPressed(KeyEvent e) {
+                Replay.Input in = map(e);
+                if (in != null) keys.offer(in.ordinal(), timestamp(e));
+            }
+
+            public void keyReleased(KeyEvent e) {
+                Replay.Input in = map(e);
+                if (in != null) keys.offer(in.ordinal() | InputQueue.RELEASED, timestamp(e));
+            }
+
+            // Release events for keys let go while unfocused never arrive, so treat losing focus as releasing all.
+            public void focusLost(FocusEvent e) {
+                long now = System.nanoTime();
+                for (Replay.Input in : INPUTS) keys.offer(in.ordinal() | InputQueue.RELEASED, now);
+            }
+
+            public void focusGained(FocusEvent e) {}
+
+            private Replay.Input map(KeyEvent e) {
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_LEFT: return Replay.Input.MOVE_LEFT;
+                    case KeyEvent.VK_RIGHT: return Replay.Input.MOVE_RIGHT;
+                    case KeyEvent.VK_DOWN: return Replay.Input.ROTATE_RIGHT;
+                    case KeyEvent.VK_UP: return Replay.Input.ROTATE_LEFT;
+                    case KeyEvent.VK_SPACE: return Replay.Input.DROP_DOWN;
+                    case 'D': return Replay.Input.SOFT_DROP;
+                    default: return null;
+                }
+            }
+
+            // The event's own time, moved onto the nanoTime clock, so time spent queued for the EDT counts too.
+            private long timestamp(KeyEvent e) {
+                return System.nanoTime() - Math.max(0, System.currentTimeMillis() - e.getWhen()) * 1_000_000L;
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        SwingUtilities.invokeLater(() -> {
+            Tetris t = new Tetris();
+            t.setVisible(true);
+        });
+    }
+}
\ No newline at end of file
@@ -0,0 +1,786 @@
+package tetris;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TetrisBoard {
+    public enum Tetrominoes { NoShape, ZShape, SShape, LineShape, TShape, SquareShape, LShape, MirroredLShape }
+
+    private static final Tetrominoes[] SHAPES = Tetrominoes.values();
+    private static final int PREVIEW_LENGTH = 6;
+
+    private final int cols;
+    private final int rows;
+    private final long fullRow;
+    // Rows live in a power-of-two ring: logical row y is slot (base + y) & mask. A line clear slides whichever
+    // side of the cleared rows is shorter, by reference, so its cost does not grow with the board or the stack.
+    // Slots outside the logical window are always empty.
+    private final int mask;
+    private int base;
+    // Every row at or above stackTop is empty.
+    private int stackTop;
+    private final long[] occupied;
+    // Column heights (one past the topmost filled cell). A column in staleColumns holds only an upper bound,
+    // left by a line clear or cell removal that uncovered its top; height(x) rescans it down on first use.
+    private final int[] heights;
+    private long staleColumns;
+    // Locked-row change counter and, per row, the count at its last change. Renderers that keep the stack
+    // between frames remember the count they last drew and repaint only the rows changed since; the board
+    // itself never forgets a change, so any number of renderers can watch it.
+    private long rowVersion;
+    private final long[] rowVersions;
+    // Colour plane, one array per slot, shared copy-on-write with copies and snapshots: a slot is only
+    // written in place while owned(slot), otherwise writableRow clones it first. A row is owned when its stamp
+    // matches shareGeneration, which every copy and snapshot bumps, so handing out the rows never writes the
+    // stamps and threads may copy one board concurrently.
+    private final byte[][] colorRows;
+    private final long[] rowStamps;
+    private final AtomicLong shareGeneration;
+    private final byte[] emptyRow;
+    // Zobrist hash of the locked cells: the sum of cellKey(x, y) over every filled cell, mod 2^64. Kept up to
+    // date on each cell write, so equal stacks reached by different move orders hash equal without a scan.
+    private long stackHash;
+    private final long[] rowScales;
+
+    private Tetromino curPiece;
+    // Ring buffer of upcoming pieces, filled ahead from the generator; previewHead is the next piece.
+    private final Tetromino[] preview;
+    private int previewHead;
+    private PieceGenerator generator;
+    private long generated;
+
+    private int curX, curY;
+    private boolean isFallingFinished, isStarted, isPaused;
+    private int numLinesRemoved;
+    private int numPieces;
+
+    // Copy-on-write, so dispatch is a plain loop over an array and allocates nothing. Copies start without
+    // listeners, which keeps lookahead on copies silent.
+    private static final BoardListener[] NO_LISTENERS = new BoardListener[0];
+    private static final int[] NO_ROWS = new int[0];
+    private BoardListener[] listeners = NO_LISTENERS;
+    private int[] clearedRows = NO_ROWS;
+
+    public TetrisBoard(int cols, int rows) {
+        this(cols, rows, ThreadLocalRandom.current().nextLong());
+    }
+
+    public TetrisBoard(int cols, int rows, long seed) {
+        this(cols, rows, PieceGenerator.uniform(seed));
+    }
+
+    public TetrisBoard(int cols, int rows, PieceGenerator generator) {
+        if (cols < 1 || cols > Long.SIZE) throw new IllegalArgumentException("cols must be between 1 and " + Long.SIZE + ": " + cols);
+        if (rows < 1) throw new IllegalArgumentException("rows must be positive: " + rows);
+        this.cols = cols;
+        this.rows = rows;
+        this.fullRow = cols == Long.SIZE ? -1L : (1L << cols) - 1;
+        int capacity = rows == 1 ? 1 : Integer.highestOneBit(rows - 1) << 1;
+        this.mask = capacity - 1;
+        this.occupied = new long[capacity];
+        this.heights = new int[cols];
+        this.colorRows = new byte[capacity][cols];
+        this.rowStamps = new long[capacity];
+        this.shareGeneration = new AtomicLong();
+        this.emptyRow = new byte[cols];
+        this.rowScales = rowScales(rows);
+        this.rowVersions = new long[rows];
+        this.generator = generator;
+        this.preview = new Tetromino[PREVIEW_LENGTH];
+        Arrays.fill(preview, TetrominoFactory.createNoShape());
+    }
+
+    private TetrisBoard(TetrisBoard other) {
+        this.cols = other.cols;
+        this.rows = other.rows;
+        this.fullRow = other.fullRow;
+        this.mask = other.mask;
+        this.base = other.base;
+        this.stackTop = other.stackTop;
+        this.occupied = other.occupied.clone();
+        this.heights = other.heights.clone();
+        this.staleColumns = other.staleColumns;
+        this.rowVersion = other.rowVersion;
+        this.rowVersions = other.rowVersions.clone();
+        this.colorRows = other.colorRows.clone();
+        this.rowStamps = new long[other.rowStamps.length];
+        this.shareGeneration = new AtomicLong(1);
+        other.shareGeneration.incrementAndGet();
+        this.emptyRow = other.emptyRow;
+        this.stackHash = other.stackHash;
+        this.rowScales = other.rowScales;
+        this.curPiece = other.curPiece;
+        this.preview = other.preview.clone();
+        this.previewHead = other.previewHead;
+        this.generator = other.generator.copy();
+        this.generated = other.generated;
+        this.curX = other.curX;
+        this.curY = other.curY;
+        this.isFallingFinished = other.isFallingFinished;
+        this.isStarted = other.isStarted;
+        this.isPaused = other.isPaused;
+        this.numLinesRemoved = other.numLinesRemoved;
+        this.numPieces = other.numPieces;
+    }
+
+    public TetrisBoard(Snapshot snapshot) {
+        this(snapshot.cols, snapshot.rows, snapshot.generator.copy());
+        restore(snapshot);
+    }
+
+    // Independent copy, including the piece generator state, for search and what-if play. Rows are shared
+    // with this board until either side writes them, so a copy costs O(rows) references.
+    public TetrisBoard copy() { return new TetrisBoard(this); }
+
+    public Snapshot snapshot() {
+        shareGeneration.incrementAndGet();
+        return new Snapshot(this);
+    }
+
+    public void restore(Snapshot s) {
+        if (s.cols != cols || s.rows != rows) {
+            throw new IllegalArgumentException("snapshot is " + s.cols + "x" + s.rows + ", board is " + cols + "x" + rows);
+        }
+        base = 0;
+        System.arraycopy(s.occupied, 0, occupied, 0, rows);
+        System.arraycopy(s.colorRows, 0, colorRows, 0, rows);
+        Arrays.fill(occupied, rows, occupied.length, 0L);
+        Arrays.fill(colorRows, rows, colorRows.length, emptyRow);
+        shareGeneration.incrementAndGet();
+        stackTop = rows;
+        while (stackTop > 0 && occupied[stackTop - 1] == 0) stackTop--;
+        Arrays.fill(heights, stackTop);
+        staleColumns = fullRow;
+        stackHash = rowsHash(0, stackTop - 1);
+        markDirty(0, rows - 1);
+        generator = s.generator.copy();
+        generated = s.generated;
+        long piece = s.piece;
+        curPiece = (piece & Snapshot.HAS_PIECE) == 0 ? null
+                : TetrominoFactory.get(SHAPES[(int) (piece & 7)], (int) (piece >>> 3) & 3);
+        isFallingFinished = (piece & Snapshot.FALLING) != 0;
+        isStarted = (piece & Snapshot.STARTED) != 0;
+        isPaused = (piece & Snapshot.PAUSED) != 0;
+        curX = (short) (piece >>> 16);
+        curY = (int) (piece >>> 32);
+        for (int i = 0; i < PREVIEW_LENGTH; i++) {
+            preview[i] = TetrominoFactory.spawn(SHAPES[(int) (s.preview >>> (3 * i)) & 7]);
+        }
+        previewHead = 0;
+        numLinesRemoved = s.numLinesRemoved;
+        numPieces = s.numPieces;
+    }
+
+    public int getCols() { return cols; }
+    public int getRows() { return rows; }
+    public int getScore() { return numLinesRemoved; }
+    public int getPieceCount() { return numPieces; }
+    public boolean isPaused() { return isPaused; }
+    public boolean isStarted() { return isStarted; }
+    public Tetromino getCurrentPiece() { return curPiece; }
+    public Tetromino getNextPiece() { return preview[previewHead]; }
+    // Upcoming piece i, where 0 is the next piece; already generated, so lookahead is free.
+    public Tetromino getPreview(int i) { return preview[(previewHead + i) % PREVIEW_LENGTH]; }
+    public int getPreviewLength() { return PREVIEW_LENGTH; }
+    public int getCurX() { return curX; }
+    public int getCurY() { return curY; }
+    public Tetrominoes shapeAt(int x, int y) { return SHAPES[colorRows[slot(y)][x]]; }
+    public long rowBits(int y) { return occupied[slot(y)]; }
+    // Colours are not hashed: two stacks with the same filled cells play identically.
+    public long getStackHash() { return stackHash; }
+
+    // The stack hash with the falling piece folded in, for searches that key on the whole position.
+    public long getPositionHash() {
+        if (curPiece == null) return stackHash;
+        return stackHash ^ mix(~((long) curPiece.getType().ordinal() << 40 | (long) curPiece.rotation() << 32
+                | (curX & 0xFFFFL) << 16 | curY & 0xFFFFL));
+    }
+
+    // Cell keys are a random key per column scaled by ROW_FACTOR^y, and fixed rather than drawn per board, so
+    // boards of any size, copies and snapshots restored in another process all agree on the hash of a stack.
+    // Summed rather than XORed, a run of rows moving down by n just multiplies its part of the hash by
+    // ROW_FACTOR^-n, which keeps a line clear that advances the ring base from rehashing the whole stack.
+    private static final long[] COLUMN_KEYS = new long[Long.SIZE];
+    private static final long ROW_FACTOR = 0x9E3779B97F4A7C15L;
+    private static final long ROW_FACTOR_INVERSE;
+    // ROW_FACTOR^y for every row of the tallest board so far, shared by all boards and only ever replaced by a
+    // longer copy.
+    private static volatile long[] sharedRowScales = {1};
+
+    static {
+        for (int x = 0; x < COLUMN_KEYS.length; x++) COLUMN_KEYS[x] = mix(x);
+        // Newton's iteration for an inverse mod 2^64; each step doubles the correct low bits.
+        long inverse = ROW_FACTOR;
+        for (int i = 0; i < 5; i++) inverse *= 2 - ROW_FACTOR * inverse;
+        ROW_FACTOR_INVERSE = inverse;
+    }
+
+    long cellKey(int x, int y) { return COLUMN_KEYS[x] * rowScales[y]; }
+
+    private static long[] rowScales(int rows) {
+        long[] scales = sharedRowScales;
+        if (scales.length >= rows) return scales;
+        synchronized (TetrisBoard.class) {
+            scales = sharedRowScales;
+            if (scales.length < rows) {
+                int from = scales.length;
+                scales = Arrays.copyOf(scales, Math.max(rows, 2 * from));
+                for (int y = from; y < scales.length; y++) scales[y] = scales[y - 1] * ROW_FACTOR;
+                sharedRowScales = scales;
+            }
+            return scales;
+        }
+    }
+
+    private static long power(long base, int exponent) {
+        long result = 1;
+        for (; exponent != 0; exponent >>>= 1, base *= base) {
+            if ((exponent & 1) != 0) result *= base;
+        }
+        return result;
+    }
+
+    private static long mix(long z) {
+        z = (z + 0x9E3779B97F4A7C15L) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // The summed keys of rows from..to.
+    private long rowsHash(int from, int to) {
+        long h = 0;
+        for (int y = Math.max(0, from); y <= to; y++) {
+            long row = 0;
+            for (long bits = occupied[slot(y)]; bits != 0; bits &= bits - 1) row += COLUMN_KEYS[Long.numberOfTrailingZeros(bits)];
+            h += row * rowScales[y];
+        }
+        return h;
+    }
+    public void addListener(BoardListener listener) {
+        BoardListener[] next = Arrays.copyOf(listeners, listeners.length + 1);
+        next[listeners.length] = listener;
+        listeners = next;
+    }
+
+    public void removeListener(BoardListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] != listener) continue;
+            BoardListener[] next = new BoardListener[listeners.length - 1];
+            System.arraycopy(listeners, 0, next, 0, i);
+            System.arraycopy(listeners, i + 1, next, i, next.length - i);
+            listeners = next.length == 0 ? NO_LISTENERS : next;
+            return;
+        }
+    }
+
+    public long getRowVersion() { return rowVersion; }
+
+    // Lowest row changed after version since, or rows if none was.
+    public int changedFrom(long since) {
+        if (since >= rowVersion) return rows;
+        int y = 0;
+        while (y < rows && rowVersions[y] <= since) y++;
+        return y;
+    }
+
+    // Highest row changed after version since, or -1 if none was.
+    public int changedTo(long since) {
+        if (since >= rowVersion) return -1;
+        int y = rows - 1;
+        while (y >= 0 && rowVersions[y] <= since) y--;
+        return y;
+    }
+
+    private void markDirty(int from, int to) {
+        rowVersion++;
+        for (int y = Math.max(0, from); y <= Math.min(rows - 1, to); y++) rowVersions[y] = rowVersion;
+    }
+
+    private int slot(int y) { return (base + y) & mask; }
+
+    // Number of rows up to and including the topmost filled cell of column x.
+    public int columnHeight(int x) { return height(x); }
+
+    // The y at which piece would come to rest if hard-dropped in column x from above the stack, in O(piece width).
+    // The piece must fit horizontally at x; the result may be above the board if the stack is too high.
+    public int landingY(Tetromino piece, int x) {
+        int left = x + piece.minX();
+        int y = Integer.MIN_VALUE;
+        for (int c = 0; c <= piece.maxX() - piece.minX(); c++) y = Math.max(y, height(left + c) + piece.columnDepth(c));
+        return y;
+    }
+
+    // Where the falling piece would lock if hard-dropped now.
+    public int ghostY() { return dropY(curPiece, curX, curY); }
+
+    // When every column of the piece is above the stack it falls straight to landingY; a piece already tucked
+    // under an overhang falls row by row instead.
+    private int dropY(Tetromino piece, int x, int y) {
+        int landing = landingY(piece, x);
+        if (landing <= y) return landing;
+        while (fits(piece, x, y - 1)) y--;
+        return y;
+    }
+
+    private int height(int x) {
+        long bit = 1L << x;
+        if ((staleColumns & bit) != 0) {
+            int h = heights[x];
+            while (h > 0 && (occupied[slot(h - 1)] & bit) == 0) h--;
+            heights[x] = h;
+            staleColumns &= ~bit;
+        }
+        return heights[x];
+    }
+
+    private void raiseHeight(int x, int y) {
+        if (y + 1 >= heights[x]) {
+            heights[x] = y + 1;
+            staleColumns &= ~(1L << x);
+        }
+    }
+
+    // Places a locked cell directly; used to set up fixtures for benchmarks and tools.
+    void setCell(int x, int y, Tetrominoes shape) {
+        int slot = slot(y);
+        writableRow(slot)[x] = (byte) shape.ordinal();
+        boolean filled = (occupied[slot] >>> x & 1) != 0;
+        if (filled && shape == Tetrominoes.NoShape) stackHash -= cellKey(x, y);
+        if (!filled && shape != Tetrominoes.NoShape) stackHash += cellKey(x, y);
+        if (shape == Tetrominoes.NoShape) {
+            occupied[slot] &= ~(1L << x);
+            if (heights[x] == y + 1) staleColumns |= 1L << x;
+        } else {
+            occupied[slot] |= 1L << x;
+            raiseHeight(x, y);
+            stackTop = Math.max(stackTop, y + 1);
+        }
+        markDirty(y, y);
+    }
+
+    public void start() {
+        clearBoard();
+        for (int i = 0; i < PREVIEW_LENGTH; i++) preview[i] = draw();
+        previewHead = 0;
+        if (numLinesRemoved != 0) {
+            numLinesRemoved = 0;
+            for (BoardListener l : listeners) l.scoreChanged(this, 0);
+        }
+        numPieces = 0;
+        isStarted = true;
+        isPaused = false;
+        isFallingFinished = false;
+        newPiece();
+    }
+
+    public void restart() { start(); }
+    public void pause() { if (isStarted) isPaused = true; }
+    public void resume() { if (isStarted) isPaused = false; }
+
+    public void tick() {
+        if (isPaused || !isStarted) return;
+        if (!Metrics.ENABLED) { advance(); return; }
+        long allocated = Metrics.allocatedBytes(), start = System.nanoTime();
+        advance();
+        Metrics.TICK.record(System.nanoTime() - start);
+        Metrics.TICK_ALLOCATION.record(Metrics.allocatedBytes() - allocated);
+    }
+
+    private void advance() {
+        if (isFallingFinished) { isFallingFinished = false; newPiece(); }
+        else oneLineDown();
+    }
+
+    public void moveLeft() { moveTo(curX - 1, curY); }
+    public void moveRight() { moveTo(curX + 1, curY); }
+    
+    public void rotateLeft() { rotateTo(curPiece.rotateLeft()); }
+    public void rotateRight() { rotateTo(curPiece.rotateRight()); }
+    
+    public void dropDown() { moveTo(curX, dropY(curPiece, curX, curY)); pieceDropped(); }
+    public void softDrop() { oneLineDown(); }
+
+    private void oneLineDown() { if (!moveTo(curX, curY - 1)) pieceDropped(); }
+
+    private boolean moveTo(int x, int y) {
+        int fromX = curX, fromY = curY;
+        if (!tryMove(curPiece, x, y)) return false;
+        if (fromX != x || fromY != y) {
+            for (BoardListener l : listeners) l.pieceMoved(this, fromX, fromY);
+        }
+        return true;
+    }
+
+    private void rotateTo(Tetromino piece) {
+        Tetromino from = curPiece;
+        if (tryMove(piece, curX, curY) && piece != from) {
+            for (BoardListener l : listeners) l.pieceRotated(this, from);
+        }
+    }
+
+    private void pieceDropped() {
+        Tetrominoes type = curPiece.getType();
+        if (type != Tetrominoes.NoShape) {
+            byte color = (byte) type.ordinal();
+            for (int i = 0; i < 4; i++) {
+                int x = curX + curPiece.x(i);
+                int y = curY - curPiece.y(i);
+                int slot = slot(y);
+                occupied[slot] |= 1L << x;
+                writableRow(slot)[x] = color;
+                stackHash += cellKey(x, y);
+                raiseHeight(x, y);
+            }
+            for (BoardListener l : listeners) l.pieceLocked(this, curPiece, curX, curY);
+            stackTop = Math.max(stackTop, curY - curPiece.minY() + 1);
+            markDirty(curY - curPiece.maxY(), curY - curPiece.minY());
+            removeFullLines(curY - curPiece.maxY(), curY - curPiece.minY());
+        }
+        if (!isFallingFinished) newPiece();
+    }
+
+    // Checks the whole stack; play only checks the rows the locked piece touched.
+    void removeFullLines() { removeFullLines(0, stackTop - 1); }
+
+    // Clears the full rows among from..to. Either the rows above slide down over them, or the rows below slide
+    // up and the ring base advances past the cleared slots, whichever moves fewer row references. Cleared
+    // slots are blanked for reuse.
+    void removeFullLines(int from, int to) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        int first = -1, last = -1, count = 0;
+        for (int y = Math.max(0, from); y <= to; y++) {
+            if (occupied[slot(y)] != fullRow) continue;
+            if (first < 0) first = y;
+            last = y;
+            if (listeners.length != 0) {
+                if (count == clearedRows.length) clearedRows = Arrays.copyOf(clearedRows, Math.max(4, count * 2));
+                clearedRows[count] = y;
+            }
+            count++;
+        }
+        if (count == 0) return;
+        // Either way only the rows that slide are rehashed: sliding down rehashes the rows from first up, and
+        // advancing the base rehashes the rows up to last and rescales the rest, which moved down by count.
+        if (stackTop - first <= last + 1) {
+            stackHash -= rowsHash(first, stackTop - 1);
+            int dst = first;
+            for (int y = first; y < stackTop; y++) {
+                if (y <= last && occupied[slot(y)] == fullRow) continue;
+                if (dst != y) swapSlots(slot(dst), slot(y));
+                dst++;
+            }
+            for (int y = dst; y < stackTop; y++) clearRow(slot(y));
+            stackHash += rowsHash(first, dst - 1);
+        } else {
+            long above = stackHash - rowsHash(0, last);
+            int dst = last;
+            for (int y = last; y >= 0; y--) {
+                if (y >= first && occupied[slot(y)] == fullRow) continue;
+                if (dst != y) swapSlots(slot(dst), slot(y));
+                dst--;
+            }
+            for (int y = 0; y <= dst; y++) clearRow(slot(y));
+            base = (base + count) & mask;
+            stackHash = above * power(ROW_FACTOR_INVERSE, count) + rowsHash(0, last - count);
+        }
+        // Every column reached row last, so each top cell above it just moved down by count; a column whose top
+        // cell was cleared only gets an upper bound until it is next queried.
+        for (int x = 0; x < cols; x++) {
+            if (heights[x] == last + 1) staleColumns |= 1L << x;
+            heights[x] -= count;
+        }
+        markDirty(first, stackTop - 1);
+        stackTop -= count;
+        numLinesRemoved += count;
+        isFallingFinished = true;
+        curPiece = TetrominoFactory.createNoShape();
+        if (Metrics.ENABLED) Metrics.LINE_CLEAR.record(System.nanoTime() - start);
+        for (BoardListener l : listeners) {
+            l.linesCleared(this, clearedRows, count);
+            l.scoreChanged(this, numLinesRemoved);
+        }
+    }
+
+    private void swapSlots(int a, int b) {
+        long bits = occupied[a];
+        occupied[a] = occupied[b];
+        occupied[b] = bits;
+        byte[] row = colorRows[a];
+        colorRows[a] = colorRows[b];
+        colorRows[b] = row;
+        long stamp = rowStamps[a];
+        rowStamps[a] = rowStamps[b];
+        rowStamps[b] = stamp;
+    }
+
+    // Replaces the current piece with a fresh one of the given type at the spawn point, for search over pieces
+    // the preview does not show yet. False, with the board untouched, if it does not fit there.
+    boolean respawn(Tetrominoes type) {
+        Tetromino piece = TetrominoFactory.spawn(type);
+        return tryMove(piece, cols / 2, rows - 1 + piece.minY());
+    }
+
+    private void newPiece() {
+        curPiece = preview[previewHead];
+        preview[previewHead] = draw();
+        previewHead = (previewHead + 1) % PREVIEW_LENGTH;
+        numPieces++;
+        curX = cols / 2;
+        curY = rows - 1 + curPiece.minY();
+        if (!tryMove(curPiece, curX, curY)) {
+            curPiece = TetrominoFactory.createNoShape();
+            isStarted = false;
+            for (BoardListener l : listeners) l.gameOver(this);
+            return;
+        }
+        for (BoardListener l : listeners) l.pieceSpawned(this, curPiece);
+    }
+
+    boolean tryMove(Tetromino newPiece, int newX, int newY) {
+        if (Metrics.ENABLED) Metrics.TRY_MOVE.mark();
+        if (!fits(newPiece, newX, newY)) return false;
+        curPiece = newPiece;
+        curX = newX;
+        curY = newY;
+        return true;
+    }
+
+    private boolean fits(Tetromino piece, int x, int y) {
+        int left = x + piece.minX();
+        int top = y - piece.minY();
+        int height = piece.maxY() - piece.minY();
+        if (left < 0 || x + piece.maxX() >= cols || top - height < 0 || top >= rows) return false;
+        for (int row = 0; row <= height; row++) {
+            if ((occupied[slot(top - row)] & (piece.rowMask(row) << left)) != 0) return false;
+        }
+        return true;
+    }
+
+    private Tetromino draw() {
+        generated++;
+        return TetrominoFactory.spawn(generator.next());
+    }
+
+    private boolean owned(int slot) { return rowStamps[slot] == shareGeneration.get(); }
+
+    private byte[] writableRow(int slot) {
+        if (!owned(slot)) {
+            colorRows[slot] = colorRows[slot].clone();
+            rowStamps[slot] = shareGeneration.get();
+        }
+        return colorRows[slot];
+    }
+
+    // A shared row is swapped for the shared blank one rather than cloned, since it is about to be empty anyway.
+    private void clearRow(int slot) {
+        occupied[slot] = 0L;
+        if (owned(slot)) {
+            Arrays.fill(colorRows[slot], (byte) 0);
+        } else {
+            colorRows[slot] = emptyRow;
+        }
+    }
+
+    private void clearBoard() {
+        for (int slot = 0; slot < occupied.length; slot++) clearRow(slot);
+        base = 0;
+        stackTop = 0;
+        stackHash = 0;
+        Arrays.fill(heights, 0);
+        staleColumns = 0;
+        markDirty(0, rows - 1);
+    }
+
+    // Immutable board state. It shares colour rows with the board it was taken from, so taking and
+    // restoring one costs O(rows) references; the falling piece, flags and preview are bit-packed into longs.
+    public static final class Snapshot {
+        static final long FALLING = 1L << 5;
+        static final long STARTED = 1L << 6;
+        static final long PAUSED = 1L << 7;
+        static final long HAS_PIECE = 1L << 8;
+
+        private final int cols;
+        private final int rows;
+        private final long[] occupied;
+        private final byte[][] colorRows;
+        // type (3 bits), rotation (2), flags (4), curX (16 bits from bit 16), curY (32 bits from bit 32)
+        private final long piece;
+        // 3 bits per upcoming piece, next piece lowest
+        private final long preview;
+        private final int numLinesRemoved;
+        private final int numPieces;
+        private final long generated;
+        private final PieceGenerator generator;
+
+        private Snapshot(TetrisBoard b) {
+            this.cols = b.cols;
+            this.rows = b.rows;
+            this.occupied = new long[rows];
+            this.colorRows = new byte[rows][];
+            for (int y = 0; y < rows; y++) {
+                occupied[y] = b.occupied[b.slot(y)];
+                colorRows[y] = b.colorRows[b.slot(y)];
+            }
+            long p = (b.isFallingFinished ? FALLING : 0) | (b.isStarted ? STARTED : 0) | (b.isPaused ? PAUSED : 0);
+            if (b.curPiece != null) p |= HAS_PIECE | b.curPiece.getType().ordinal() | (long) b.curPiece.rotation() << 3;
+            this.piece = p | (long) (b.curX & 0xFFFF) << 16 | (long) b.curY << 32;
+            long next = 0;
+            for (int i = 0; i < PREVIEW_LENGTH; i++) next |= (long) b.getPreview(i).getType().ordinal() << (3 * i);
+            this.preview = next;
+            this.numLinesRemoved = b.numLinesRemoved;
+            this.numPieces = b.numPieces;
+            this.generated = b.generated;
+            this.generator = b.generator.copy();
+        }
+
+        private Snapshot(int cols, int rows, long[] occupied, byte[][] colorRows, long piece, long preview,
+                         int numLinesRemoved, int numPieces, long generated, PieceGenerator generator) {
+            this.cols = cols;
+            this.rows = rows;
+            this.occupied = occupied;
+            this.colorRows = colorRows;
+            this.piece = piece;
+            this.preview = preview;
+            this.numLinesRemoved = numLinesRemoved;
+            this.numPieces = numPieces;
+            this.generated = generated;
+            this.generator = generator;
+        }
+
+        public int getCols() { return cols; }
+        public int getRows() { return rows; }
+        public int getScore() { return numLinesRemoved; }
+        public int getPieceCount() { return numPieces; }
+
+        // Varints for the scalars, then for each row up to the top of the stack an occupancy mask of cols bits
+        // followed by 3 bits per occupied cell. The generator is stored by position only (pieces drawn).
+        public void writeTo(DataOutput out) throws IOException {
+            writeVarLong(out, cols);
+            writeVarLong(out, rows);
+            writeVarLong(out, generated);
+            writeVarLong(out, numLinesRemoved);
+            writeVarLong(out, numPieces);
+            writeVarLong(out, piece & 0x1FF);
+            writeVarLong(out, zigzag((short) (piece >>> 16)));
+            writeVarLong(out, zigzag((int) (piece >>> 32)));
+            writeVarLong(out, preview);
+            int height = rows;
+            while (height > 0 && occupied[height - 1] == 0) height--;
+            writeVarLong(out, height);
+            long acc = 0;
+            int bits = 0;
+            for (int y = 0; y < height; y++) {
+                long mask = occupied[y];
+                for (int x = 0; x < cols; x++) {
+                    boolean filled = (mask >>> x & 1) != 0;
+                    acc |= (filled ? 1L : 0L) << bits++;
+                    if (filled) {
+                        acc |= (long) (colorRows[y][x] & 7) << bits;
+                        bits += 3;
+                    }
+                    while (bits >= 8) {
+                        out.writeByte((int) acc);
+                        acc >>>= 8;
+                        bits -= 8;
+                    }
+                }
+            }
+            if (bits > 0) out.writeByte((int) acc);
+        }
+
+        public byte[] toBytes() {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            try {
+                writeTo(new DataOutputStream(bytes));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        // The generator must be seeded exactly as the original board's was; it is fast-forwarded to the stored position.
+        public static Snapshot readFrom(DataInput in, PieceGenerator generator) throws IOException {
+            int cols = (int) readVarLong(in);
+            int rows = (int) readVarLong(in);
+            if (cols < 1 || cols > Long.SIZE || rows < 1) throw new IOException("bad snapshot size: " + cols + "x" + rows);
+            long generated = readVarLong(in);
+            for (long i = 0; i < generated; i++) generator.next();
+            int lines = (int) readVarLong(in);
+            int pieces = (int) readVarLong(in);
+            long piece = readVarLong(in) & 0x1FF;
+            piece |= (unzigzag(readVarLong(in)) & 0xFFFFL) << 16;
+            piece |= unzigzag(readVarLong(in)) << 32;
+            long preview = readVarLong(in);
+            int height = (int) readVarLong(in);
+            if (height > rows) throw new IOException("bad snapshot height: " + height);
+            long[] occupied = new long[rows];
+            byte[][] colorRows = new byte[rows][];
+            byte[] empty = new byte[cols];
+            Arrays.fill(colorRows, height, rows, empty);
+            long acc = 0;
+            int bits = 0;
+            for (int y = 0; y < height; y++) {
+                byte[] row = new byte[cols];
+                for (int x = 0; x < cols; x++) {
+                    if (bits == 0) {
+                        acc = in.readUnsignedByte();
+                        bits = 8;
+                    }
+                    boolean filled = (acc & 1) != 0;
+                    acc >>>= 1;
+                    bits--;
+                    if (filled) {
+                        if (bits < 3) {
+                            acc |= (long) in.readUnsignedByte() << bits;
+                            bits += 8;
+                        }
+                        occupied[y] |= 1L << x;
+                        row[x] = (byte) (acc & 7);
+                        acc >>>= 3;
+                        bits -= 3;
+                    }
+                }
+                colorRows[y] = row;
+            }
+            return new Snapshot(cols, rows, occupied, colorRows, piece, preview, lines, pieces, generated, generator);
+        }
+
+        public static Snapshot fromBytes(byte[] bytes, PieceGenerator generator) {
+            try {
+                return readFrom(new DataInputStream(new ByteArrayInputStream(bytes)), generator);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("malformed snapshot", e);
+            }
+        }
+
+        private static long zigzag(long v) { return (v << 1) ^ (v >> 63); }
+        private static long unzigzag(long v) { return (v >>> 1) ^ -(v & 1); }
+
+        private static void writeVarLong(DataOutput out, long v) throws IOException {
+            while ((v & ~0x7FL) != 0) {
+                out.writeByte((int) (v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            out.writeByte((int) v);
+        }
+
+        private static long readVarLong(DataInput in) throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = in.readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return v;
+            }
+            throw new IOException("malformed varint");
+        }
+    }
+}
\ No newline at end of file
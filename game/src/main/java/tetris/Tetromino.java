@@ -0,0 +1,16 @@
+package tetris;
+
+interface Tetromino {
+    int x(int index);
+    int y(int index);
+    int minX();
+    int maxX();
+    int minY();
+    int maxY();
+    long rowMask(int row);
+    int columnDepth(int col);
+    int rotation();
+    Tetromino rotateLeft();
+    Tetromino rotateRight();
+    TetrisBoard.Tetrominoes getType();
+}
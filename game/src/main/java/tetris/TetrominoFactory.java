@@ -0,0 +1,119 @@
+package tetris;
+
+import java.util.Arrays;
+
+// Instances are shared flyweights: one per piece type and rotation state, built once by TetrominoFactory.
+class BasicTetromino implements Tetromino {
+    protected final TetrisBoard.Tetrominoes type;
+    protected final int[][] coords;
+    private final int rotation;
+    private final int minX, maxX, minY, maxY;
+    private final long[] rowMasks;
+    private final int[] columnDepths;
+    Tetromino left, right;
+
+    BasicTetromino(TetrisBoard.Tetrominoes type, int rotation, int[][] coords) {
+        this.type = type;
+        this.rotation = rotation;
+        this.coords = coords;
+        int x0 = coords[0][0], x1 = x0, y0 = coords[0][1], y1 = y0;
+        for (int i = 1; i < 4; i++) {
+            x0 = Math.min(x0, coords[i][0]); x1 = Math.max(x1, coords[i][0]);
+            y0 = Math.min(y0, coords[i][1]); y1 = Math.max(y1, coords[i][1]);
+        }
+        this.minX = x0; this.maxX = x1; this.minY = y0; this.maxY = y1;
+        this.rowMasks = new long[y1 - y0 + 1];
+        for (int i = 0; i < 4; i++) rowMasks[coords[i][1] - y0] |= 1L << (coords[i][0] - x0);
+        this.columnDepths = new int[x1 - x0 + 1];
+        Arrays.fill(columnDepths, Integer.MIN_VALUE);
+        for (int i = 0; i < 4; i++) {
+            int c = coords[i][0] - x0;
+            columnDepths[c] = Math.max(columnDepths[c], coords[i][1]);
+        }
+        this.left = this;
+        this.right = this;
+    }
+
+    public int x(int index) { return coords[index][0]; }
+    public int y(int index) { return coords[index][1]; }
+    public int minX() { return minX; }
+    public int maxX() { return maxX; }
+    public int minY() { return minY; }
+    public int maxY() { return maxY; }
+    public int rotation() { return rotation; }
+    public TetrisBoard.Tetrominoes getType() { return type; }
+
+    // Cells of piece row minY() + row, as bits relative to minX().
+    public long rowMask(int row) { return rowMasks[row]; }
+
+    // Largest y (lowest cell on the board) in piece column minX() + col.
+    public int columnDepth(int col) { return columnDepths[col]; }
+
+    public Tetromino rotateLeft() { return left; }
+    public Tetromino rotateRight() { return right; }
+}
+
+class SquareTetromino extends BasicTetromino {
+    SquareTetromino() {
+        super(TetrisBoard.Tetrominoes.SquareShape, 0, new int[][] {{0,0}, {1,0}, {0,1}, {1,1}});
+    }
+}
+
+class TetrominoFactory {
+    private static final int[][][] COORDS_TABLE = new int[][][]{
+            {{0,0},{0,0},{0,0},{0,0}}, 
+            {{0,-1},{0,0},{-1,0},{-1,1}},
+            {{0,-1},{0,0},{1,0},{1,1}},   
+            {{0,-1},{0,0},{0,1},{0,2}},  
+            {{-1,0},{0,0},{1,0},{0,1}},  
+            {{0,0},{1,0},{0,1},{1,1}},    
+            {{-1,-1},{0,-1},{0,0},{0,1}},
+            {{1,-1},{0,-1},{0,0},{0,1}}   
+    };
+
+    // ROTATIONS[type][r] is the piece after r left rotations; rotating right walks the table backwards.
+    private static final Tetromino[][] ROTATIONS = new Tetromino[COORDS_TABLE.length][];
+
+    static {
+        for (TetrisBoard.Tetrominoes type : TetrisBoard.Tetrominoes.values()) {
+            int t = type.ordinal();
+            if (type == TetrisBoard.Tetrominoes.NoShape) {
+                ROTATIONS[t] = new Tetromino[] { new BasicTetromino(type, 0, COORDS_TABLE[t]) };
+                continue;
+            }
+            if (type == TetrisBoard.Tetrominoes.SquareShape) {
+                ROTATIONS[t] = new Tetromino[] { new SquareTetromino() };
+                continue;
+            }
+            BasicTetromino[] states = new BasicTetromino[4];
+            int[][] coords = COORDS_TABLE[t];
+            for (int r = 0; r < 4; r++) {
+                states[r] = new BasicTetromino(type, r, coords);
+                int[][] next = new int[4][2];
+                for (int i = 0; i < 4; i++) {
+                    next[i][0] = coords[i][1];
+                    next[i][1] = -coords[i][0];
+                }
+                coords = next;
+            }
+            for (int r = 0; r < 4; r++) {
+                states[r].left = states[(r + 1) & 3];
+                states[r].right = states[(r + 3) & 3];
+            }
+            ROTATIONS[t] = states;
+        }
+    }
+
+    public static Tetromino get(TetrisBoard.Tetrominoes type, int rotation) {
+        Tetromino[] states = ROTATIONS[type.ordinal()];
+        return states[rotation % states.length];
+    }
+
+    public static Tetromino spawn(TetrisBoard.Tetrominoes type) {
+        return ROTATIONS[type.ordinal()][0];
+    }
+
+    public static Tetromino createNoShape() {
+        return ROTATIONS[0][0];
+    }
+}
@@ -0,0 +1,109 @@
+package tetris;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fixed-size cache of evaluations keyed by 64-bit position hashes (see TetrisBoard.getStackHash), shared by any
+// number of searching threads without locks. An entry is three words: the value, a meta word with the depth and
+// generation it was stored in, and a check word holding key ^ value ^ meta. Writers store the words without
+// coordinating, so racing stores can interleave; a reader recomputes the check and takes a torn entry as a miss.
+// A bucket holds two entries: the first keeps the deepest result, unless it is from an older generation, and
+// the second always takes whatever the first turned away or gave up, so a bucket remembers two positions even
+// when every store has the same depth.
+public final class TranspositionTable {
+    private static final int WORDS = 3;
+    private static final long VALID = 1L << 63;
+
+    private final AtomicLongArray table;
+    private final int bucketBits;
+    private volatile int generation;
+    private final LongAdder probes = new LongAdder(), hits = new LongAdder(), collisions = new LongAdder();
+    private final LongAdder stores = new LongAdder(), evictions = new LongAdder();
+
+    // entries is rounded down to a power of two, and holds at least one bucket.
+    public TranspositionTable(int entries) {
+        if (entries < 2 || entries > 1 << 28) throw new IllegalArgumentException("entries must be between 2 and 2^28: " + entries);
+        this.bucketBits = Integer.numberOfTrailingZeros(Integer.highestOneBit(entries)) - 1;
+        this.table = new AtomicLongArray((2 << bucketBits) * WORDS);
+    }
+
+    public int capacity() { return 2 << bucketBits; }
+    public long getFootprintBytes() { return (long) table.length() * Long.BYTES; }
+    public long getProbes() { return probes.sum(); }
+    public long getHits() { return hits.sum(); }
+    // Probes that found their bucket holding other positions, and stores that overwrote one.
+    public long getCollisions() { return collisions.sum(); }
+    public long getStores() { return stores.sum(); }
+    public long getEvictions() { return evictions.sum(); }
+
+    public double hitRate() {
+        long p = getProbes();
+        return p == 0 ? 0 : (double) getHits() / p;
+    }
+
+    // Starts a new search. Entries from earlier generations stay readable but lose their claim on the deep slot.
+    public void newGeneration() { generation = (generation + 1) & 0xFF; }
+
+    // The value stored for key at depth minDepth or deeper, or NaN when there is none.
+    public double get(long key, int minDepth) {
+        probes.increment();
+        int at = bucket(key);
+        boolean occupied = false;
+        for (int i = at; i < at + 2 * WORDS; i += WORDS) {
+            long value = table.getOpaque(i + 1), meta = table.getOpaque(i + 2);
+            if ((meta & VALID) == 0) continue;
+            if ((table.getOpaque(i) ^ value ^ meta) == key) {
+                if ((int) (meta & 0xFF) < minDepth) break;
+                hits.increment();
+                return Double.longBitsToDouble(value);
+            }
+            occupied = true;
+        }
+        if (occupied) collisions.increment();
+        return Double.NaN;
+    }
+
+    // Keeps a deeper result already stored for the same key.
+    public void put(long key, int depth, double value) {
+        int at = bucket(key), gen = generation;
+        depth = Math.max(0, Math.min(depth, 0xFF));
+        long deepMeta = table.getOpaque(at + 2);
+        boolean deepValid = (deepMeta & VALID) != 0;
+        int target = at;
+        if (deepValid && holds(at, key)) {
+            if (depth < (int) (deepMeta & 0xFF)) return;
+        } else if (!deepValid || (int) (deepMeta >>> 8 & 0xFF) != gen || depth >= (int) (deepMeta & 0xFF)) {
+            if (deepValid) {
+                if ((table.getOpaque(at + WORDS + 2) & VALID) != 0 && !holds(at + WORDS, key)) evictions.increment();
+                write(at + WORDS, table.getOpaque(at), table.getOpaque(at + 1), deepMeta);
+            }
+        } else {
+            target = at + WORDS;
+            if ((table.getOpaque(target + 2) & VALID) != 0 && !holds(target, key)) evictions.increment();
+        }
+        stores.increment();
+        long bits = Double.doubleToRawLongBits(value), meta = VALID | (long) gen << 8 | depth;
+        write(target, key ^ bits ^ meta, bits, meta);
+    }
+
+    private boolean holds(int at, long key) {
+        return (table.getOpaque(at) ^ table.getOpaque(at + 1) ^ table.getOpaque(at + 2)) == key;
+    }
+
+    private void write(int at, long check, long value, long meta) {
+        table.setOpaque(at + 1, value);
+        table.setOpaque(at + 2, meta);
+        table.setOpaque(at, check);
+    }
+
+    // The top bits pick the bucket; the check word covers the whole key.
+    private int bucket(long key) {
+        return bucketBits == 0 ? 0 : (int) (key >>> (Long.SIZE - bucketBits)) * 2 * WORDS;
+    }
+
+    public String summary() {
+        return String.format(Locale.ROOT, "tt entries=%d footprint=%.1fMB probes=%d hitRate=%.3f collisions=%d stores=%d evictions=%d",
+                capacity(), getFootprintBytes() / 1048576.0, getProbes(), hitRate(), getCollisions(), getStores(), getEvictions());
+    }
+}
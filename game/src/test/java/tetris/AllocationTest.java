@@ -0,0 +1,12 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class AllocationTest {
+    @Test
+    void playDoesNotAllocate() {
+        assertEquals(0, AllocationCheck.measure(), "bytes allocated by spawn, move, rotate, lock and events");
+    }
+}
@@ -0,0 +1,35 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import tetris.TetrisBoard.Tetrominoes;
+
+class AutoPlayerTest {
+    // The current piece and the preview are the same on both boards; only the pieces the generator has not
+    // shown yet differ, so a search deeper than the preview must still choose the same placement.
+    @Test
+    void searchPastThePreviewDoesNotSeeHiddenPieces() {
+        Tetrominoes[] shown = {Tetrominoes.SquareShape, Tetrominoes.SquareShape, Tetrominoes.SShape, Tetrominoes.ZShape,
+                Tetrominoes.MirroredLShape, Tetrominoes.MirroredLShape, Tetrominoes.ZShape};
+        for (Tetrominoes hidden : Tetrominoes.values()) {
+            if (hidden == Tetrominoes.NoShape) continue;
+            TetrisBoard a = board(shown, Tetrominoes.SShape);
+            TetrisBoard b = board(shown, hidden);
+            AutoPlayer.Placement pa = new AutoPlayer(AutoPlayer.WeightedHeuristic.standard(), 9, 4, null).decide(a);
+            AutoPlayer.Placement pb = new AutoPlayer(AutoPlayer.WeightedHeuristic.standard(), 9, 4, null).decide(b);
+            assertEquals(pa.rotations, pb.rotations, "rotations with " + hidden + " next unseen");
+            assertEquals(pa.shift, pb.shift, "shift with " + hidden + " next unseen");
+        }
+    }
+
+    private static TetrisBoard board(Tetrominoes[] shown, Tetrominoes hidden) {
+        Tetrominoes[] all = new Tetrominoes[shown.length + 3];
+        System.arraycopy(shown, 0, all, 0, shown.length);
+        for (int i = shown.length; i < all.length; i++) all[i] = hidden;
+        TetrisBoard board = new TetrisBoard(10, 20, PieceGenerator.sequence(all));
+        board.start();
+        return board;
+    }
+}
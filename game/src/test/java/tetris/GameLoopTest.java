@@ -0,0 +1,27 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class GameLoopTest {
+    @Test
+    void exceptionFromAStepIsReportedAndStopsTheLoop() throws Exception {
+        AtomicInteger steps = new AtomicInteger();
+        GameLoop loop = new GameLoop(1000, () -> {
+            if (steps.incrementAndGet() == 3) throw new IllegalStateException("boom");
+        }, () -> {}, null);
+        CompletableFuture<RuntimeException> failure = new CompletableFuture<>();
+        loop.setFailureListener(failure::complete);
+        loop.start("test-loop");
+        RuntimeException e = failure.get(5, TimeUnit.SECONDS);
+        assertEquals("boom", e.getMessage());
+        Thread.sleep(50);
+        assertEquals(3, steps.get(), "no steps after the failure");
+        loop.stop();
+    }
+}
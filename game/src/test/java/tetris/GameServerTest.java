@@ -0,0 +1,76 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import org.junit.jupiter.api.Test;
+
+class GameServerTest {
+    @Test
+    void acksEchoTheInputAndRestartAfterGameOver() throws Exception {
+        GameServer server = new GameServer(0, 400);
+        server.start();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            socket.setSoTimeout(10_000);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+
+            int seq = 100, state = GameServer.PLAYING;
+            while (state == GameServer.PLAYING && seq < 1000) {
+                byte[] ack = send(out, in, GameServer.HARD_DROP, ++seq);
+                assertEquals(seq, readInt(ack, 0), "echoed seq");
+                state = ack[12];
+            }
+            assertEquals(GameServer.OVER, state, "hard drops alone top the board out");
+
+            byte[] ack = send(out, in, GameServer.RESTART, ++seq);
+            assertEquals(seq, readInt(ack, 0));
+            assertEquals(0, readInt(ack, 4), "a new game starts at score 0");
+            assertEquals(GameServer.PLAYING, ack[12]);
+            assertEquals(1, server.getSessions());
+        } finally {
+            server.close();
+        }
+    }
+
+    // With platform threads the session thread sits in a socket read that shutting down the executor does
+    // not interrupt; close() has to close the socket under it.
+    @Test
+    void closeEndsOpenSessions() throws Exception {
+        GameServer server = new GameServer(0, 400);
+        server.start();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            socket.setSoTimeout(10_000);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            send(out, in, GameServer.LEFT, 1);
+            assertEquals(1, server.getSessions());
+
+            server.close();
+            assertEquals(-1, in.read(), "the server closed the connection");
+            for (int i = 0; i < 1000 && server.getSessions() > 0; i++) Thread.sleep(10);
+            assertEquals(0, server.getSessions());
+        } finally {
+            server.close();
+        }
+    }
+
+    private static byte[] send(DataOutputStream out, DataInputStream in, int op, int seq) throws Exception {
+        out.writeByte(op);
+        out.writeInt(seq);
+        out.flush();
+        byte[] ack = new byte[GameServer.ACK_BYTES];
+        in.readFully(ack);
+        assertTrue(ack[12] == GameServer.PLAYING || ack[12] == GameServer.OVER);
+        return ack;
+    }
+
+    private static int readInt(byte[] b, int at) {
+        return (b[at] & 0xff) << 24 | (b[at + 1] & 0xff) << 16 | (b[at + 2] & 0xff) << 8 | (b[at + 3] & 0xff);
+    }
+}
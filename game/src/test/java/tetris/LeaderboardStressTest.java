@@ -0,0 +1,16 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class LeaderboardStressTest {
+    // Smaller than the command-line default so the build stays quick; still enough for compactions and batches
+    // from every process to interleave.
+    @ParameterizedTest
+    @ValueSource(strings = {"txt", "bin"})
+    void concurrentProcessesLoseNoScores(String format) throws Exception {
+        assertEquals(0, LeaderboardStress.run(3, 400, format), "lost scores plus failed children");
+    }
+}
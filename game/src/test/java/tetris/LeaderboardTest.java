@@ -0,0 +1,99 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LeaderboardTest {
+    @TempDir
+    Path dir;
+
+    // File locks are per JVM, so without a shared monitor the second instance's writer died on OverlappingFileLockException.
+    @Test
+    void twoInstancesOnOneStoreInOneProcess() {
+        String store = dir.resolve("scores.txt").toString();
+        Leaderboard a = new Leaderboard(store), b = new Leaderboard(store);
+        for (int i = 0; i < 200; i++) {
+            a.submit("a" + i, i);
+            b.submit("b" + i, i);
+        }
+        a.submit("a-last", 1000).join();
+        b.submit("b-last", 1000).join();
+        a.close();
+        b.close();
+        Leaderboard check = new Leaderboard(store);
+        assertEquals(402, check.size());
+        check.close();
+    }
+
+    // Beating a score in the mapped (binary) snapshot shadows that entry; ranks and ranges must skip it.
+    @Test
+    void ranksSkipShadowedSnapshotEntries() {
+        Leaderboard lb = new Leaderboard(dir.resolve("scores.bin").toString());
+        Map<String, Integer> model = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            lb.submit("p" + i, i * 7 % 101);
+            model.put("p" + i, i * 7 % 101);
+        }
+        lb.submit("p-last", 0).join();
+        model.put("p-last", 0);
+        lb.compact();
+        for (int i = 0; i < 300; i += 3) {
+            lb.submit("p" + i, 50 + i);
+            model.merge("p" + i, 50 + i, Math::max);
+        }
+        lb.submit("p-last", 1).join();
+        model.put("p-last", 1);
+
+        List<Leaderboard.Entry> expected = new ArrayList<>();
+        model.forEach((name, score) -> expected.add(new Leaderboard.Entry(name, score)));
+        expected.sort(Leaderboard.RANKING);
+        assertEquals(expected.size(), lb.size());
+        List<Leaderboard.Entry> all = lb.load();
+        for (int r = 0; r < expected.size(); r++) {
+            Leaderboard.Entry e = expected.get(r);
+            assertEquals(e.name, all.get(r).name, "rank " + (r + 1));
+            assertEquals(r + 1, lb.rankOf(e.name), e.name);
+        }
+        List<Leaderboard.Entry> page = lb.range(101, 120);
+        for (int r = 0; r < page.size(); r++) assertEquals(expected.get(100 + r).name, page.get(r).name);
+        lb.close();
+    }
+
+    @Test
+    void submitAfterCloseFails() {
+        Leaderboard lb = new Leaderboard(dir.resolve("scores.txt").toString());
+        lb.close();
+        assertThrows(CompletionException.class, () -> lb.submit("late", 1).join());
+    }
+
+    @Test
+    void tornRecordIsDroppedOnReopen() throws Exception {
+        String store = dir.resolve("scores.txt").toString();
+        Path log = new File(store + ".log").toPath();
+        String nl = System.lineSeparator();
+        Files.write(log, ("alice,10" + nl + "bo").getBytes(Charset.defaultCharset()), StandardOpenOption.CREATE);
+        Leaderboard lb = new Leaderboard(store);
+        lb.submit("carol", 30).join();
+        Map<String, Integer> found = new HashMap<>();
+        for (Leaderboard.Entry e : lb.load()) found.put(e.name, e.score);
+        assertEquals(Map.of("alice", 10, "carol", 30), found);
+        String text = new String(Files.readAllBytes(log), Charset.defaultCharset());
+        assertTrue(text.equals("alice,10" + nl + "carol,30" + nl), text);
+        lb.close();
+    }
+}
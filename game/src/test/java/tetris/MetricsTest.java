@@ -0,0 +1,42 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.ReflectionException;
+import javax.management.RuntimeOperationsException;
+
+import org.junit.jupiter.api.Test;
+
+class MetricsTest {
+    // The array used to stop at 944 counters, so anything from 2^62 up went out of bounds.
+    @Test
+    void histogramTakesTheLargestValues() {
+        Metrics.Histogram h = new Metrics.Histogram("Test", "Units", 1);
+        h.record(1L << 62);
+        h.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, Metrics.Histogram.highest(Metrics.Histogram.bucket(Long.MAX_VALUE)));
+    }
+
+    // invoke used to throw UnsupportedOperationException and setAttributes to drop writes without a word.
+    @Test
+    void groupRejectsWritesAndOperationsTheJmxWay() {
+        Metrics.Group group = new Metrics.Group("Test");
+        group.add(new Metrics.Histogram("Lag", "Millis", 1e6));
+        String attribute = group.getMBeanInfo().getAttributes()[0].getName();
+
+        assertThrows(AttributeNotFoundException.class, () -> group.getAttribute("Missing"));
+        assertThrows(AttributeNotFoundException.class, () -> group.setAttribute(new Attribute(attribute, 1.0)));
+        AttributeList writes = new AttributeList();
+        writes.add(new Attribute(attribute, 1.0));
+        RuntimeOperationsException e = assertThrows(RuntimeOperationsException.class, () -> group.setAttributes(writes));
+        assertEquals(attribute + " is read-only", e.getTargetException().getMessage());
+        assertEquals(0, group.setAttributes(new AttributeList()).size());
+        ReflectionException r = assertThrows(ReflectionException.class, () -> group.invoke("reset", new Object[0], new String[0]));
+        assertInstanceOf(NoSuchMethodException.class, r.getTargetException());
+    }
+}
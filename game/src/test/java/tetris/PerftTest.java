@@ -0,0 +1,14 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+class PerftTest {
+    @Test
+    void referencePositionsCountAsRecorded() {
+        assertEquals(0, new Perft(ForkJoinPool.commonPool()).verify(), "perft counts differing from the reference");
+    }
+}
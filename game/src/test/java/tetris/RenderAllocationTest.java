@@ -0,0 +1,12 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class RenderAllocationTest {
+    @Test
+    void framesDoNotAllocate() {
+        assertEquals(0, RenderAllocationCheck.measure(), "bytes allocated by damage and render");
+    }
+}
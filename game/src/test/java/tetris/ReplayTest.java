@@ -0,0 +1,77 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReplayTest {
+    private static final long SEED = 5;
+    private static final int STEP_MILLIS = 50;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayAndSeekReproduceTheLiveGame() throws Exception {
+        Path file = dir.resolve("game.rpl");
+        TetrisBoard live = new TetrisBoard(10, 20, PieceGenerator.of("uniform", SEED));
+        live.start();
+        AutoPlayer player = new AutoPlayer(AutoPlayer.WeightedHeuristic.standard(), 1, 4, null);
+        long time = 0, midTime = -1;
+        TetrisBoard.Tetrominoes[] midCells = null;
+        int midScore = 0;
+        try (Replay.Recorder recorder = Replay.Recorder.create(file, 10, 20, "uniform", SEED)) {
+            List<Replay.Input> inputs = new ArrayList<>();
+            for (int piece = 0; piece < 400 && live.isStarted(); piece++) {
+                inputs.clear();
+                player.decide(live).forEachInput(inputs::add);
+                inputs.add(Replay.Input.TICK);
+                for (Replay.Input in : inputs) {
+                    in.apply(live);
+                    time += STEP_MILLIS;
+                    recorder.record(in, time, live);
+                }
+                if (piece == 250) {
+                    midTime = time;
+                    midCells = cells(live);
+                    midScore = live.getScore();
+                }
+            }
+        }
+        assertTrue(live.getScore() > 0 && midCells != null, "the bot cleared lines and got past the midpoint");
+
+        try (Replay.Player replay = Replay.Player.open(file)) {
+            assertEquals(time, replay.duration());
+            replay.playToEnd();
+            assertEquals(0, replay.divergences(), "every checkpoint matched the re-simulated board");
+            assertEquals(live.getScore(), replay.board().getScore());
+            assertArrayEquals(cells(live), cells(replay.board()));
+
+            // Backwards from the end, so the board comes from a checkpoint rather than from the start.
+            replay.seek(midTime);
+            assertEquals(midTime, replay.time());
+            assertEquals(midScore, replay.board().getScore());
+            assertArrayEquals(midCells, cells(replay.board()));
+
+            replay.playToEnd();
+            assertEquals(0, replay.divergences());
+            assertEquals(live.getScore(), replay.board().getScore());
+            assertArrayEquals(cells(live), cells(replay.board()));
+        }
+    }
+
+    private static TetrisBoard.Tetrominoes[] cells(TetrisBoard board) {
+        TetrisBoard.Tetrominoes[] out = new TetrisBoard.Tetrominoes[board.getCols() * board.getRows()];
+        for (int y = 0; y < board.getRows(); y++) {
+            for (int x = 0; x < board.getCols(); x++) out[y * board.getCols() + x] = board.shapeAt(x, y);
+        }
+        return out;
+    }
+}
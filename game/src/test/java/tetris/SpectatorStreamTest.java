@@ -0,0 +1,41 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+class SpectatorStreamTest {
+    // The game panel attaches its feed before Start is pressed and steps it every frame.
+    @Test
+    void unstartedBoardSendsNothing() {
+        SpectatorStream.Encoder encoder = new SpectatorStream.Encoder(60);
+        encoder.attach(new TetrisBoard(10, 20, 1));
+        assertNull(encoder.next());
+        assertNull(encoder.next());
+    }
+
+    @Test
+    void pieceOnATallBoardKeepsItsRow() {
+        TetrisBoard board = new TetrisBoard(10, 200, 1);
+        SpectatorStream.Encoder encoder = new SpectatorStream.Encoder(60);
+        encoder.attach(board);
+        board.start();
+        SpectatorStream.Decoder decoder = new SpectatorStream.Decoder();
+        int highest = 0;
+        for (int step = 0; step < 400; step++) {
+            if (step % 3 == 0) board.moveLeft();
+            board.tick();
+            byte[] frame = encoder.next();
+            if (frame == null) continue;
+            assertTrue(decoder.accept(ByteBuffer.wrap(frame)));
+            assertEquals(board.getCurX(), decoder.getCurX());
+            assertEquals(board.getCurY(), decoder.getCurY());
+            highest = Math.max(highest, decoder.getCurY());
+        }
+        assertTrue(highest > 127, "a row past the old signed-byte range was streamed");
+    }
+}
@@ -0,0 +1,214 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+class TetrisBoardTest {
+    // Parallel searchers copy one root board from several threads; copying used to clear the root's row
+    // ownership in place.
+    @Test
+    void copiesFromManyThreadsLeaveEveryBoardIndependent() throws Exception {
+        TetrisBoard root = new TetrisBoard(10, 20, 7);
+        root.start();
+        for (int i = 0; i < 12; i++) drop(root, i);
+        TetrisBoard.Tetrominoes[] before = cells(root);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> work = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            work.add(pool.submit(() -> {
+                for (int n = 0; n < 200; n++) {
+                    TetrisBoard copy = root.copy();
+                    for (int i = 0; i < 6; i++) drop(copy, seed + n + i);
+                }
+            }));
+        }
+        for (Future<?> f : work) f.get();
+        pool.shutdown();
+        assertArrayEquals(before, cells(root));
+
+        TetrisBoard copy = root.copy();
+        for (int i = 0; i < 6; i++) drop(root, i);
+        assertArrayEquals(before, cells(copy), "the root's own writes after a copy stay out of the copy");
+    }
+
+    // The stack hash is updated incrementally on locks and clears; it must always equal the sum of cellKey over
+    // the filled cells, however the rows moved.
+    @Test
+    void stackHashMatchesARecomputeAfterClearsRestoresAndCopies() {
+        TetrisBoard board = new TetrisBoard(10, 20, 2);
+        int[] clears = new int[2];
+        board.addListener(new BoardListener() {
+            @Override
+            public void linesCleared(TetrisBoard b, int[] rows, int count) {
+                clears[rows[0] == 0 ? 0 : 1]++;
+            }
+        });
+        AutoPlayer player = new AutoPlayer(AutoPlayer.WeightedHeuristic.standard(), 1, 4, null);
+        board.start();
+        TetrisBoard.Snapshot saved = null;
+        for (int n = 0; n < 400; n++) {
+            if (!board.isStarted()) board.start();
+            player.decide(board).applyTo(board);
+            // A stray piece now and then leaves holes, so some clears happen above the bottom row.
+            if (n % 23 == 0) drop(board, n);
+            board.tick();
+            assertEquals(recomputed(board), board.getStackHash(), "after piece " + n);
+            if (n == 60) saved = board.snapshot();
+            if (n % 100 == 99) {
+                board.restore(saved);
+                assertEquals(recomputed(board), board.getStackHash(), "after restore at piece " + n);
+            }
+            if (n % 50 == 0) {
+                TetrisBoard copy = board.copy();
+                assertEquals(board.getStackHash(), copy.getStackHash());
+                for (int i = 0; i < 4; i++) drop(copy, n + i);
+                assertEquals(recomputed(copy), copy.getStackHash(), "copy of piece " + n);
+                assertEquals(recomputed(board), board.getStackHash(), "original after its copy played");
+            }
+        }
+        assertTrue(clears[0] > 10, "clears from the bottom row, which advance the ring base: " + clears[0]);
+        assertTrue(clears[1] > 10, "clears above it, which slide rows down: " + clears[1]);
+    }
+
+    @Test
+    void snapshotSurvivesBytesAndRestoresMidGame() {
+        TetrisBoard board = new TetrisBoard(10, 20, 11);
+        board.start();
+        AutoPlayer player = new AutoPlayer(AutoPlayer.WeightedHeuristic.standard(), 1, 4, null);
+        for (int n = 0; n < 40; n++) {
+            player.decide(board).applyTo(board);
+            board.tick();
+        }
+        board.moveLeft();
+        board.rotateRight();
+        board.tick();
+        assertTrue(board.isStarted() && board.getScore() > 0 && board.getStackHash() != 0, "a mid-game board");
+
+        byte[] bytes = board.snapshot().toBytes();
+        assertTrue(bytes.length <= 64, "a few dozen bytes, not one per cell: " + bytes.length);
+        TetrisBoard restored = new TetrisBoard(10, 20, 99);
+        restored.restore(TetrisBoard.Snapshot.fromBytes(bytes, PieceGenerator.uniform(11)));
+
+        assertArrayEquals(cells(board), cells(restored));
+        assertEquals(board.getCurrentPiece().getType(), restored.getCurrentPiece().getType());
+        assertEquals(board.getCurrentPiece().rotation(), restored.getCurrentPiece().rotation());
+        assertEquals(board.getCurX(), restored.getCurX());
+        assertEquals(board.getCurY(), restored.getCurY());
+        assertEquals(board.getScore(), restored.getScore());
+        assertEquals(board.getPieceCount(), restored.getPieceCount());
+        for (int i = 0; i < board.getPreviewLength(); i++) {
+            assertEquals(board.getPreview(i).getType(), restored.getPreview(i).getType(), "preview " + i);
+        }
+        assertEquals(board.getStackHash(), restored.getStackHash());
+        assertEquals(board.getPositionHash(), restored.getPositionHash());
+
+        // The generator was fast-forwarded, so both boards go on to draw the same pieces.
+        for (int n = 0; n < 20; n++) {
+            drop(board, n);
+            drop(restored, n);
+        }
+        assertArrayEquals(cells(board), cells(restored));
+        assertEquals(board.getScore(), restored.getScore());
+    }
+
+    // Clears of the bottom row advance the ring base; clears above it slide the rows between. Each drop is
+    // checked against a plain row array that clears by copying rows down. Before a drop, the rows the piece
+    // will land in are mostly filled around it, so most drops clear something. Rows left with a hole bury the
+    // bottom for good, so the game restarts every 10 drops. 128 rows fill the ring exactly, so a slot a base
+    // advance leaves unblanked comes straight into view as the top row.
+    @Test
+    void ringClearsMatchANaiveModelOnATallBoard() {
+        TetrisBoard board = new TetrisBoard(10, 128, 21);
+        int[] clears = new int[2];
+        board.addListener(new BoardListener() {
+            @Override
+            public void linesCleared(TetrisBoard b, int[] rows, int count) {
+                clears[rows[0] == 0 ? 0 : 1]++;
+            }
+        });
+        Random random = new Random(21);
+        for (int n = 0; n < 3000; n++) {
+            if (n % 10 == 0 || !board.isStarted()) board.start();
+            for (int r = random.nextInt(4); r > 0; r--) board.rotateRight();
+            for (int m = random.nextInt(6); m > 0; m--) {
+                if (random.nextBoolean()) board.moveLeft(); else board.moveRight();
+            }
+            Tetromino piece = board.getCurrentPiece();
+            int x0 = board.getCurX(), y0 = board.ghostY();
+            long pieceColumns = 0;
+            for (int i = 0; i < 4; i++) pieceColumns |= 1L << (x0 + piece.x(i));
+            for (int y = y0 - piece.maxY(); y <= y0 - piece.minY(); y++) {
+                if (random.nextInt(10) < 3) continue;
+                for (int x = 0; x < board.getCols(); x++) {
+                    if ((pieceColumns >>> x & 1) == 0) board.setCell(x, y, TetrisBoard.Tetrominoes.LineShape);
+                }
+            }
+
+            TetrisBoard.Tetrominoes[][] model = rows(board);
+            for (int i = 0; i < 4; i++) model[y0 - piece.y(i)][x0 + piece.x(i)] = piece.getType();
+            int kept = 0;
+            for (TetrisBoard.Tetrominoes[] row : model) {
+                if (Arrays.asList(row).contains(TetrisBoard.Tetrominoes.NoShape)) model[kept++] = row;
+            }
+            for (int y = kept; y < model.length; y++) {
+                model[y] = new TetrisBoard.Tetrominoes[board.getCols()];
+                Arrays.fill(model[y], TetrisBoard.Tetrominoes.NoShape);
+            }
+
+            board.dropDown();
+            assertArrayEquals(model, rows(board), "after drop " + n);
+            board.tick();
+        }
+        assertTrue(clears[0] > 50, "bottom clears: " + clears[0]);
+        assertTrue(clears[1] > 50, "clears above the bottom: " + clears[1]);
+    }
+
+    private static TetrisBoard.Tetrominoes[][] rows(TetrisBoard board) {
+        TetrisBoard.Tetrominoes[][] out = new TetrisBoard.Tetrominoes[board.getRows()][board.getCols()];
+        for (int y = 0; y < board.getRows(); y++) {
+            for (int x = 0; x < board.getCols(); x++) out[y][x] = board.shapeAt(x, y);
+        }
+        return out;
+    }
+
+    private static long recomputed(TetrisBoard board) {
+        long h = 0;
+        for (int y = 0; y < board.getRows(); y++) {
+            for (int x = 0; x < board.getCols(); x++) {
+                if (board.shapeAt(x, y) != TetrisBoard.Tetrominoes.NoShape) h += board.cellKey(x, y);
+            }
+        }
+        return h;
+    }
+
+    private static void drop(TetrisBoard board, int k) {
+        if (!board.isStarted()) return;
+        for (int r = 0; r < k % 4; r++) board.rotateRight();
+        for (int m = 0; m < k % 5; m++) {
+            if (k % 2 == 0) board.moveLeft(); else board.moveRight();
+        }
+        board.dropDown();
+        board.tick();
+    }
+
+    private static TetrisBoard.Tetrominoes[] cells(TetrisBoard board) {
+        TetrisBoard.Tetrominoes[] out = new TetrisBoard.Tetrominoes[board.getCols() * board.getRows()];
+        for (int y = 0; y < board.getRows(); y++) {
+            for (int x = 0; x < board.getCols(); x++) out[y * board.getCols() + x] = board.shapeAt(x, y);
+        }
+        return out;
+    }
+}
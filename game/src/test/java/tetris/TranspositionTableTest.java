@@ -0,0 +1,78 @@
+package tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+// Two entries make a one-bucket table, so every key below competes for the same two slots.
+class TranspositionTableTest {
+    private static final long A = 0x1234_5678_9abc_def0L, B = 0x0fed_cba9_8765_4321L, C = 0x5555_aaaa_5555_aaaaL;
+
+    @Test
+    void storedValueComesBackAtItsDepth() {
+        TranspositionTable table = new TranspositionTable(1 << 10);
+        table.put(A, 3, 1.5);
+        assertEquals(1.5, table.get(A, 3));
+        assertEquals(1.5, table.get(A, 0));
+        assertTrue(Double.isNaN(table.get(A, 4)), "a shallower result does not answer a deeper probe");
+        assertTrue(Double.isNaN(table.get(B, 0)));
+    }
+
+    @Test
+    void deeperEntryIsKeptOverAShallowerOne() {
+        TranspositionTable table = new TranspositionTable(2);
+        table.put(A, 5, 1.0);
+        table.put(A, 2, 2.0);
+        assertEquals(1.0, table.get(A, 0), "same key, shallower store ignored");
+
+        table.put(B, 2, 3.0);
+        table.put(C, 1, 4.0);
+        assertEquals(1.0, table.get(A, 5), "shallower keys of the same generation leave the deep slot alone");
+        assertEquals(4.0, table.get(C, 0));
+        assertTrue(Double.isNaN(table.get(B, 0)), "the second slot holds the latest shallow store");
+    }
+
+    @Test
+    void olderGenerationGivesUpTheDeepSlot() {
+        TranspositionTable table = new TranspositionTable(2);
+        table.put(A, 5, 1.0);
+        table.newGeneration();
+        table.put(B, 1, 2.0);
+        table.put(C, 1, 3.0);
+        assertEquals(3.0, table.get(C, 0), "the current generation's store took the deep slot from A's");
+        assertEquals(2.0, table.get(B, 0));
+        assertTrue(Double.isNaN(table.get(A, 0)));
+    }
+
+    @Test
+    void secondSlotTakesTheDisplacedEntry() {
+        TranspositionTable table = new TranspositionTable(2);
+        table.put(A, 1, 1.0);
+        table.put(B, 2, 2.0);
+        assertEquals(2.0, table.get(B, 2));
+        assertEquals(1.0, table.get(A, 1), "moved to the second slot rather than dropped");
+    }
+
+    @Test
+    void countersTrackProbesHitsCollisionsStoresAndEvictions() {
+        TranspositionTable table = new TranspositionTable(2);
+        table.get(A, 0);
+        assertEquals(1, table.getProbes());
+        assertEquals(0, table.getCollisions(), "an empty bucket is a plain miss");
+
+        table.put(A, 3, 1.0);
+        table.put(B, 2, 2.0);
+        assertEquals(2, table.getStores());
+        assertEquals(0, table.getEvictions());
+        table.put(C, 1, 3.0);
+        assertEquals(1, table.getEvictions(), "C replaced B in the second slot");
+
+        table.get(A, 0);
+        table.get(B, 0);
+        assertEquals(3, table.getProbes());
+        assertEquals(1, table.getHits());
+        assertEquals(1, table.getCollisions(), "B's bucket held other positions");
+        assertEquals(1 / 3.0, table.hitRate(), 1e-12);
+    }
+}